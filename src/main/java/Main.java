@@ -1,9 +1,21 @@
+import com.utils.interfaces.ISessionStore;
 import com.utils.services.*;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import okhttp3.OkHttpClient;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+
 public class Main {
+    private static WeatherAPI weatherAPI;
+    private static final Duration GEOCODING_STORE_TTL = Duration.ofDays(30);
+    private static final Duration SESSION_SNAPSHOT_INTERVAL = Duration.ofMinutes(5);
+
     public static void main(String[] args) {
         if (args.length == 0) {
             printUsage();
@@ -55,25 +67,53 @@ public class Main {
         }
 
         try {
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(new TelegramBot(botUsername, botToken));
+            TelegramBot bot = new TelegramBot(botUsername, botToken, getWeatherAPI(), openSessionStore());
+            enableIdleEviction(bot);
+            bot.enableOutboundQueue();
+            enableProgressiveReplies(bot);
+            enableAdmissionControl(bot);
+
+            if ("webhook".equalsIgnoreCase(System.getenv("TELEGRAM_UPDATES_MODE"))) {
+                startWebhook(bot);
+            } else {
+                TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+                botsApi.registerBot(bot);
+            }
 
             System.out.println("Telegram bot started successfully!");
             System.out.println("Bot username: " + botUsername);
             System.out.println("Погодный бот с кнопками запущен и ожидает сообщений...");
             System.out.println("Бот запоминает города пользователей и показывает кнопки для выбора периода.");
 
-        } catch (TelegramApiException e) {
+        } catch (TelegramApiException | IOException e) {
             System.err.println("Failed to start Telegram bot: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    // WEBHOOK_PORT и WEBHOOK_PATH - где слушать обновления, WEBHOOK_SECRET - секрет из заголовка Telegram,
+    // WEBHOOK_URL - публичный адрес для setWebhook (без него сервер просто принимает POST, удобно локально)
+    private static void startWebhook(TelegramBot bot) throws IOException, TelegramApiException {
+        int port = Integer.parseInt(System.getenv().getOrDefault("WEBHOOK_PORT", "8443"));
+        String path = System.getenv().getOrDefault("WEBHOOK_PATH", "/telegram");
+        String secret = System.getenv("WEBHOOK_SECRET");
+
+        WebhookServer server = new WebhookServer(new InetSocketAddress(port), path, secret, bot::onUpdatesReceived);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+
+        String publicUrl = System.getenv("WEBHOOK_URL");
+        if (publicUrl != null) {
+            bot.execute(SetWebhook.builder().url(publicUrl).secretToken(secret).build());
+        }
+        System.out.printf("Webhook: обновления принимаются на порту %d по пути %s%s%n", port, path,
+                publicUrl != null ? ", зарегистрирован " + publicUrl : "");
+    }
+
     private static void startConsoleBot() {
         System.out.println("=== ЗАПУСК КОНСОЛЬНОГО БОТА ===");
 
-        WeatherAPI weatherAPI = new WeatherAPI();
-        DialogLogic dialogLogic = new DialogLogic(weatherAPI);
+        DialogLogic dialogLogic = new DialogLogic(getWeatherAPI());
         Console console = new Console(dialogLogic);
 
         console.runBot();
@@ -99,6 +139,136 @@ public class Main {
         System.out.println("Оба бота запущены. Консольный бот работает в основном потоке.");
     }
 
+    // Один WeatherAPI (а значит один HTTP-клиент, кэши и пакетирование) на оба фронтенда
+    private static synchronized WeatherAPI getWeatherAPI() {
+        if (weatherAPI == null) {
+            OkHttpClient client = HttpClients.shared();
+            HttpClients.prewarm(client, HttpClients.UPSTREAM_HOSTS);
+
+            Geocoding geocoding = new Geocoding(client);
+            geocoding.useGazetteer(loadGazetteer());
+            geocoding.useStore(new GeocodingStore(
+                    Path.of(System.getenv().getOrDefault("GEOCODING_CACHE_PATH", "geocoding-cache.log")),
+                    GEOCODING_STORE_TTL
+            )).thenAccept(count -> System.out.println("Кэш геокодирования: загружено " + count + " городов"));
+
+            weatherAPI = new WeatherAPI(client, geocoding);
+            enableForecastBatching(weatherAPI);
+        }
+        return weatherAPI;
+    }
+
+    // FORECAST_BATCH_WINDOW_MS - сколько копить промахи кэша прогнозов перед общим запросом,
+    // FORECAST_BATCH_MAX_LOCATIONS - сколько координат в одном запросе; без окна каждый прогноз запрашивается отдельно
+    private static void enableForecastBatching(WeatherAPI weatherAPI) {
+        String windowMillis = System.getenv("FORECAST_BATCH_WINDOW_MS");
+        if (windowMillis == null) {
+            return;
+        }
+        int maxLocations = Integer.parseInt(System.getenv().getOrDefault("FORECAST_BATCH_MAX_LOCATIONS", "50"));
+        weatherAPI.enableBatching(Duration.ofMillis(Long.parseLong(windowMillis)), maxLocations);
+        System.out.printf("Пакетные запросы прогноза: окно %s мс, до %d координат%n", windowMillis, maxLocations);
+    }
+
+    // SESSIONS_DIR - каталог WAL и снимков сессий; при ошибке бот работает с сессиями только в памяти
+    private static ISessionStore openSessionStore() {
+        Path directory = Path.of(System.getenv().getOrDefault("SESSIONS_DIR", "sessions"));
+        try {
+            WalSessionStore store = WalSessionStore.open(directory, SESSION_SNAPSHOT_INTERVAL);
+            System.out.printf("Сессии: восстановлено %d за %d мс из %s%n",
+                    store.getRecoveredCount(), store.getRecoveryMillis(), directory);
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.err.println("Не удалось закрыть хранилище сессий: " + e.getMessage());
+                }
+            }));
+            return store;
+        } catch (IOException e) {
+            System.err.println("Хранилище сессий недоступно, сессии не переживут перезапуск: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // SESSION_IDLE_MINUTES - через сколько минут простоя сессия уходит из памяти в файл SESSIONS_DIR/cold.bin
+    private static void enableIdleEviction(TelegramBot bot) {
+        Path directory = Path.of(System.getenv().getOrDefault("SESSIONS_DIR", "sessions"));
+        Duration idleAfter = Duration.ofMinutes(Long.parseLong(System.getenv().getOrDefault("SESSION_IDLE_MINUTES", "30")));
+        try {
+            ColdSessionTier coldTier = new ColdSessionTier(directory.resolve("cold.bin"));
+            bot.enableIdleEviction(idleAfter, coldTier);
+            System.out.printf("Простаивающие сессии выгружаются через %d мин: %s%n", idleAfter.toMinutes(), coldTier);
+        } catch (IOException e) {
+            System.err.println("Холодное хранилище сессий недоступно, все сессии остаются в памяти: " + e.getMessage());
+        }
+    }
+
+    // PROGRESSIVE_REPLY_SECONDS - сколько ждать свежий прогноз за заглушкой, прежде чем показать последний известный;
+    // без переменной прогноз отправляется одним сообщением, когда загрузится
+    private static void enableProgressiveReplies(TelegramBot bot) {
+        String seconds = System.getenv("PROGRESSIVE_REPLY_SECONDS");
+        if (seconds == null) {
+            return;
+        }
+        bot.enableProgressiveReplies(Duration.ofSeconds(Long.parseLong(seconds)));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.printf(
+                "Задержка ответа: первая реакция %s; итоговый ответ %s%n",
+                bot.getPerceivedLatency(), bot.getCompletionLatency())));
+        System.out.println("Прогрессивные ответы: заглушка, затем прогноз, запасной ответ через " + seconds + " с");
+    }
+
+    // INGESTION_CAPACITY - сколько обновлений может ждать обработки, INGESTION_LATENCY_TARGET_MS - допустимое
+    // ожидание в очереди, INGESTION_POLICY - reject-newest, drop-oldest-per-chat или reply-busy,
+    // IO_LANE_CONCURRENCY - сколько обновлений одновременно могут ждать Open-Meteo и Nominatim
+    private static void enableAdmissionControl(TelegramBot bot) {
+        int capacity = Integer.parseInt(System.getenv().getOrDefault("INGESTION_CAPACITY", "10000"));
+        Duration target = Duration.ofMillis(Long.parseLong(System.getenv().getOrDefault("INGESTION_LATENCY_TARGET_MS", "5000")));
+        AdmissionPolicy policy = AdmissionPolicy.valueOf(
+                System.getenv().getOrDefault("INGESTION_POLICY", "reply-busy").toUpperCase().replace('-', '_'));
+
+        int ioConcurrency = Integer.parseInt(System.getenv().getOrDefault("IO_LANE_CONCURRENCY", "32"));
+
+        bot.enableAdmissionControl(capacity, target, policy);
+        bot.limitIoConcurrency(ioConcurrency);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Быстрая полоса: " + bot.getDispatcher());
+            System.out.println("Сетевая полоса: " + bot.getIoLane());
+        }));
+        System.out.printf("Очередь обработки: до %d обновлений на полосу, цель %d мс, при перегрузке %s; "
+                + "сетевых задач одновременно не больше %d%n", capacity, target.toMillis(), policy, ioConcurrency);
+    }
+
+    // GAZETTEER_PATH - бинарный справочник городов, отображается в память
+    // (собирается из ресурса при первом запуске и после обновления ресурса)
+    private static Gazetteer loadGazetteer() {
+        Path path = Path.of(System.getenv().getOrDefault("GAZETTEER_PATH", "gazetteer.bin"));
+        long heapBefore = usedHeap();
+        try {
+            Gazetteer gazetteer;
+            try {
+                gazetteer = Gazetteer.openOrCompile(path);
+            } catch (IOException e) {
+                System.err.println("Файл справочника " + path + " недоступен, справочник собирается в памяти: "
+                        + e.getMessage());
+                gazetteer = Gazetteer.loadBundled();
+            }
+            System.out.printf("Справочник городов: %d мест, %d названий, %d КБ, загружен за %d мс, +%d КБ кучи%n",
+                    gazetteer.getPlaceCount(), gazetteer.getNameCount(), gazetteer.getSizeBytes() / 1024,
+                    gazetteer.getLoadMillis(), Math.max(0, usedHeap() - heapBefore) / 1024);
+            return gazetteer;
+        } catch (IOException e) {
+            System.err.println("Справочник городов недоступен, геокодирование только через сеть: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     private static void printUsage() {
         System.out.println("Использование: java Main <режим>");
         System.out.println("Режимы:");
@@ -110,5 +280,9 @@ public class Main {
         System.out.println("  java Main 1  - запуск Telegram погодного бота с кнопками");
         System.out.println("  java Main 2  - запуск консольной версии погодного бота");
         System.out.println("  java Main 3  - запуск обеих версий одновременно");
+        System.out.println();
+        System.out.println("Telegram бот получает обновления через long polling; для webhook задайте");
+        System.out.println("  TELEGRAM_UPDATES_MODE=webhook (и WEBHOOK_PORT, WEBHOOK_PATH, WEBHOOK_URL, WEBHOOK_SECRET)");
+        System.out.println("PROGRESSIVE_REPLY_SECONDS=3 - сразу отвечать заглушкой и править её в прогноз");
     }
 }
\ No newline at end of file
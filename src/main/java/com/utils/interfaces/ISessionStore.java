@@ -0,0 +1,29 @@
+package com.utils.interfaces;
+
+import com.utils.models.UserSession;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+public interface ISessionStore extends AutoCloseable {
+    // Актуальные сессии вызывающего (например, SessionTable::forEach) - из них пишутся снимки
+    @FunctionalInterface
+    interface Source {
+        void forEach(Consumer<UserSession> action);
+    }
+
+    // Сессии, восстановленные при открытии хранилища; отдаются один раз
+    Collection<UserSession> loadAll();
+
+    // Без источника снимки не пишутся и состояние остаётся только в журнале
+    void snapshotFrom(Source sessions);
+
+    // Не блокирует: запись уходит в фоновый поток
+    void save(UserSession session);
+
+    void remove(long chatId);
+
+    @Override
+    void close() throws IOException;
+}
@@ -1,36 +1,118 @@
 package com.utils.models;
 
-import com.google.gson.annotations.SerializedName;
+import java.time.LocalDate;
 import java.util.List;
 
+// Адаптер со старым List-интерфейсом поверх неизменяемых DailyColumns.
+// Геттеры возвращают представления без копирования, сеттеры заменяют колонку целиком.
 public class Daily {
-    private List<String> time;
-    
-    @SerializedName("temperature_2m_max")
-    private List<Double> temperature2mMax;
-
-    @SerializedName("temperature_2m_min")
-    private List<Double> temperature2mMin;
-
-    @SerializedName("weathercode")
-    private List<Integer> weatherCode;
-
-    @SerializedName("windspeed_10m_max")
-    private List<Double> windspeed10mMax;
-
-    @SerializedName("precipitation_probability_max")
-    private List<Double> precipitationProbabilityMax;
-
-    public List<String> getTime() { return time; }
-    public void setTime(List<String> time) { this.time = time; }
-    public List<Double> getTemperature2mMax() { return temperature2mMax; }
-    public void setTemperature2mMax(List<Double> temperature2mMax) { this.temperature2mMax = temperature2mMax; }
-    public List<Double> getTemperature2mMin() { return temperature2mMin; }
-    public void setTemperature2mMin(List<Double> temperature2mMin) { this.temperature2mMin = temperature2mMin; }
-    public List<Integer> getWeatherCode() { return weatherCode; }
-    public void setWeatherCode(List<Integer> weatherCode) { this.weatherCode = weatherCode; }
-    public List<Double> getWindspeed10mMax() { return windspeed10mMax; }
-    public void setWindspeed10mMax(List<Double> windspeed10mMax) { this.windspeed10mMax = windspeed10mMax; }
-    public List<Double> getPrecipitationProbabilityMax() { return precipitationProbabilityMax; }
-    public void setPrecipitationProbabilityMax(List<Double> precipitationProbabilityMax) { this.precipitationProbabilityMax = precipitationProbabilityMax; }
-}
\ No newline at end of file
+    private DailyColumns columns;
+
+    public Daily() {
+        this(DailyColumns.empty());
+    }
+
+    public Daily(DailyColumns columns) {
+        this.columns = columns;
+    }
+
+    public DailyColumns getColumns() { return columns; }
+
+    public List<String> getTime() {
+        DailyColumns c = columns;
+        if (!c.hasTime()) return null;
+        return PrimitiveLists.view(c.getEpochDaysLength(), i -> LocalDate.ofEpochDay(c.getEpochDay(i)).toString());
+    }
+
+    public void setTime(List<String> time) {
+        int[] epochDays = null;
+        if (time != null) {
+            epochDays = new int[time.size()];
+            for (int i = 0; i < epochDays.length; i++) {
+                epochDays[i] = (int) LocalDate.parse(time.get(i)).toEpochDay();
+            }
+        }
+        columns = columns.withEpochDays(epochDays);
+    }
+
+    public List<Double> getTemperature2mMax() {
+        DailyColumns c = columns;
+        if (!c.hasTemperatureMax()) return null;
+        return PrimitiveLists.view(c.getTemperatureMaxLength(), i -> toDouble(c.getTemperatureMax(i)));
+    }
+
+    public void setTemperature2mMax(List<Double> temperature2mMax) {
+        columns = columns.withTemperatureMax(toFloats(temperature2mMax));
+    }
+
+    public List<Double> getTemperature2mMin() {
+        DailyColumns c = columns;
+        if (!c.hasTemperatureMin()) return null;
+        return PrimitiveLists.view(c.getTemperatureMinLength(), i -> toDouble(c.getTemperatureMin(i)));
+    }
+
+    public void setTemperature2mMin(List<Double> temperature2mMin) {
+        columns = columns.withTemperatureMin(toFloats(temperature2mMin));
+    }
+
+    public List<Integer> getWeatherCode() {
+        DailyColumns c = columns;
+        if (!c.hasWeatherCodes()) return null;
+        return PrimitiveLists.view(c.getWeatherCodesLength(), c::getWeatherCode);
+    }
+
+    public void setWeatherCode(List<Integer> weatherCode) {
+        byte[] codes = null;
+        if (weatherCode != null) {
+            codes = new byte[weatherCode.size()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = (byte) (int) weatherCode.get(i);
+            }
+        }
+        columns = columns.withWeatherCodes(codes);
+    }
+
+    public List<Double> getWindspeed10mMax() {
+        DailyColumns c = columns;
+        if (!c.hasWindspeedMax()) return null;
+        return PrimitiveLists.view(c.getWindspeedMaxLength(), i -> toDouble(c.getWindspeedMax(i)));
+    }
+
+    public void setWindspeed10mMax(List<Double> windspeed10mMax) {
+        columns = columns.withWindspeedMax(toFloats(windspeed10mMax));
+    }
+
+    public List<Double> getPrecipitationProbabilityMax() {
+        DailyColumns c = columns;
+        if (!c.hasPrecipitationProbabilityMax()) return null;
+        return PrimitiveLists.view(c.getPrecipitationProbabilityMaxLength(),
+                i -> toDouble(c.getPrecipitationProbabilityMax(i)));
+    }
+
+    public void setPrecipitationProbabilityMax(List<Double> precipitationProbabilityMax) {
+        columns = columns.withPrecipitationProbabilityMax(toFloats(precipitationProbabilityMax));
+    }
+
+    // Первые days дней прогноза; колонки не копируются
+    public Daily firstDays(int days) {
+        return new Daily(columns.firstDays(days));
+    }
+
+    // Колонки хранятся во float; прямое расширение до double дало бы 20.299999237 вместо 20.3,
+    // поэтому значение восстанавливается по кратчайшей десятичной записи float
+    private static double toDouble(float value) {
+        return Double.parseDouble(Float.toString(value));
+    }
+
+    private static float[] toFloats(List<Double> values) {
+        if (values == null) {
+            return null;
+        }
+        float[] result = new float[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            Double value = values.get(i);
+            result[i] = value == null ? Float.NaN : value.floatValue();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,125 @@
+package com.utils.models;
+
+import java.util.Arrays;
+
+// Неизменяемый колоночный прогноз: даты хранятся как epoch day, температуры и ветер во float,
+// коды погоды в byte (коды WMO укладываются в 0..99). Отсутствующая колонка - null.
+// Массивы никогда не изменяются после создания, поэтому один экземпляр можно раздавать из кэша всем потокам.
+public final class DailyColumns {
+    private final int[] epochDays;
+    private final float[] temperatureMax;
+    private final float[] temperatureMin;
+    private final byte[] weatherCodes;
+    private final float[] windspeedMax;
+    private final float[] precipitationProbabilityMax;
+    // Срез первых limit дней использует те же массивы без копирования
+    private final int limit;
+
+    public DailyColumns(int[] epochDays, float[] temperatureMax, float[] temperatureMin, byte[] weatherCodes,
+                        float[] windspeedMax, float[] precipitationProbabilityMax) {
+        this(copy(epochDays), copy(temperatureMax), copy(temperatureMin), copy(weatherCodes),
+                copy(windspeedMax), copy(precipitationProbabilityMax), Integer.MAX_VALUE);
+    }
+
+    private DailyColumns(int[] epochDays, float[] temperatureMax, float[] temperatureMin, byte[] weatherCodes,
+                         float[] windspeedMax, float[] precipitationProbabilityMax, int limit) {
+        this.epochDays = epochDays;
+        this.temperatureMax = temperatureMax;
+        this.temperatureMin = temperatureMin;
+        this.weatherCodes = weatherCodes;
+        this.windspeedMax = windspeedMax;
+        this.precipitationProbabilityMax = precipitationProbabilityMax;
+        this.limit = limit;
+    }
+
+    public static DailyColumns empty() {
+        return new DailyColumns(null, null, null, null, null, null, Integer.MAX_VALUE);
+    }
+
+    public DailyColumns firstDays(int days) {
+        return new DailyColumns(epochDays, temperatureMax, temperatureMin, weatherCodes,
+                windspeedMax, precipitationProbabilityMax, Math.min(limit, days));
+    }
+
+    public int getDays() { return length(epochDays); }
+
+    public boolean hasTime() { return epochDays != null; }
+    public boolean hasTemperatureMax() { return temperatureMax != null; }
+    public boolean hasTemperatureMin() { return temperatureMin != null; }
+    public boolean hasWeatherCodes() { return weatherCodes != null; }
+    public boolean hasWindspeedMax() { return windspeedMax != null; }
+    public boolean hasPrecipitationProbabilityMax() { return precipitationProbabilityMax != null; }
+
+    public int getEpochDay(int day) { return epochDays[checkIndex(day, length(epochDays))]; }
+    public float getTemperatureMax(int day) { return temperatureMax[checkIndex(day, length(temperatureMax))]; }
+    public float getTemperatureMin(int day) { return temperatureMin[checkIndex(day, length(temperatureMin))]; }
+    public int getWeatherCode(int day) { return weatherCodes[checkIndex(day, length(weatherCodes))]; }
+    public float getWindspeedMax(int day) { return windspeedMax[checkIndex(day, length(windspeedMax))]; }
+    public float getPrecipitationProbabilityMax(int day) {
+        return precipitationProbabilityMax[checkIndex(day, length(precipitationProbabilityMax))];
+    }
+
+    public int getEpochDaysLength() { return length(epochDays); }
+    public int getTemperatureMaxLength() { return length(temperatureMax); }
+    public int getTemperatureMinLength() { return length(temperatureMin); }
+    public int getWeatherCodesLength() { return length(weatherCodes); }
+    public int getWindspeedMaxLength() { return length(windspeedMax); }
+    public int getPrecipitationProbabilityMaxLength() { return length(precipitationProbabilityMax); }
+
+    DailyColumns withEpochDays(int[] values) {
+        return new DailyColumns(values, temperatureMax, temperatureMin, weatherCodes,
+                windspeedMax, precipitationProbabilityMax, limit);
+    }
+
+    DailyColumns withTemperatureMax(float[] values) {
+        return new DailyColumns(epochDays, values, temperatureMin, weatherCodes,
+                windspeedMax, precipitationProbabilityMax, limit);
+    }
+
+    DailyColumns withTemperatureMin(float[] values) {
+        return new DailyColumns(epochDays, temperatureMax, values, weatherCodes,
+                windspeedMax, precipitationProbabilityMax, limit);
+    }
+
+    DailyColumns withWeatherCodes(byte[] values) {
+        return new DailyColumns(epochDays, temperatureMax, temperatureMin, values,
+                windspeedMax, precipitationProbabilityMax, limit);
+    }
+
+    DailyColumns withWindspeedMax(float[] values) {
+        return new DailyColumns(epochDays, temperatureMax, temperatureMin, weatherCodes,
+                values, precipitationProbabilityMax, limit);
+    }
+
+    DailyColumns withPrecipitationProbabilityMax(float[] values) {
+        return new DailyColumns(epochDays, temperatureMax, temperatureMin, weatherCodes,
+                windspeedMax, values, limit);
+    }
+
+    // Приблизительный размер данных колонок в байтах, без заголовков объектов
+    public long estimatedBytes() {
+        long bytes = 0;
+        if (epochDays != null) bytes += 4L * epochDays.length;
+        if (temperatureMax != null) bytes += 4L * temperatureMax.length;
+        if (temperatureMin != null) bytes += 4L * temperatureMin.length;
+        if (weatherCodes != null) bytes += weatherCodes.length;
+        if (windspeedMax != null) bytes += 4L * windspeedMax.length;
+        if (precipitationProbabilityMax != null) bytes += 4L * precipitationProbabilityMax.length;
+        return bytes;
+    }
+
+    private int length(int[] column) { return column == null ? 0 : Math.min(column.length, limit); }
+    private int length(float[] column) { return column == null ? 0 : Math.min(column.length, limit); }
+    private int length(byte[] column) { return column == null ? 0 : Math.min(column.length, limit); }
+
+    private static int checkIndex(int day, int length) {
+        if (day < 0 || day >= length) {
+            throw new IndexOutOfBoundsException("Index: " + day + ", Size: " + length);
+        }
+        return day;
+    }
+
+    private static int[] copy(int[] values) { return values == null ? null : Arrays.copyOf(values, values.length); }
+    private static float[] copy(float[] values) { return values == null ? null : Arrays.copyOf(values, values.length); }
+    private static byte[] copy(byte[] values) { return values == null ? null : Arrays.copyOf(values, values.length); }
+}
@@ -5,5 +5,21 @@ public class OpenMeteoResponse {
 
     public Daily getDaily() { return daily; }
     public void setDaily(Daily daily) { this.daily = daily; }
+
+    public int getDays() {
+        if (daily == null) {
+            return 0;
+        }
+        return daily.getColumns().getDays();
+    }
+
+    public OpenMeteoResponse firstDays(int days) {
+        if (daily == null || getDays() <= days) {
+            return this;
+        }
+        OpenMeteoResponse response = new OpenMeteoResponse();
+        response.setDaily(daily.firstDays(days));
+        return response;
+    }
 }
 
@@ -0,0 +1,40 @@
+package com.utils.models;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+// Неизменяемые List-представления поверх примитивных колонок: значение упаковывается только при get(i)
+public final class PrimitiveLists {
+
+    private PrimitiveLists() {
+    }
+
+    public static <T> List<T> view(int size, IntFunction<T> getter) {
+        return new ColumnView<>(size, getter);
+    }
+
+    private static final class ColumnView<T> extends AbstractList<T> implements RandomAccess {
+        private final int size;
+        private final IntFunction<T> getter;
+
+        ColumnView(int size, IntFunction<T> getter) {
+            this.size = size;
+            this.getter = getter;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return getter.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
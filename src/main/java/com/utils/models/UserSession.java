@@ -0,0 +1,57 @@
+package com.utils.models;
+
+import java.util.Objects;
+
+// Неизменяемый снимок сессии пользователя для хранилища: активна ли, код состояния, выбранный город
+public final class UserSession {
+    private final long chatId;
+    private final boolean active;
+    private final byte state;
+    private final String city;
+
+    public UserSession(long chatId, boolean active, byte state, String city) {
+        this.chatId = chatId;
+        this.active = active;
+        this.state = state;
+        this.city = city;
+    }
+
+    public long getChatId() { return chatId; }
+    public boolean isActive() { return active; }
+    public byte getState() { return state; }
+    public String getCity() { return city; }
+
+    public static UserSession inactive(long chatId) {
+        return new UserSession(chatId, false, (byte) 0, null);
+    }
+
+    public UserSession withActive(boolean active) {
+        return active == this.active ? this : new UserSession(chatId, active, state, city);
+    }
+
+    public UserSession withState(byte state) {
+        return state == this.state ? this : new UserSession(chatId, active, state, city);
+    }
+
+    public UserSession withCity(String city) {
+        return Objects.equals(city, this.city) ? this : new UserSession(chatId, active, state, city);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof UserSession other)) return false;
+        return chatId == other.chatId && active == other.active && state == other.state
+                && Objects.equals(city, other.city);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(chatId) * 31 + state;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UserSession{chatId=%d, active=%b, state=%d, city='%s'}", chatId, active, state, city);
+    }
+}
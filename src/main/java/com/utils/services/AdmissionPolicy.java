@@ -0,0 +1,11 @@
+package com.utils.services;
+
+// Что делать с обновлением, когда очередь обработки переполнена или задержка в ней выше цели
+public enum AdmissionPolicy {
+    // Новое обновление отбрасывается
+    REJECT_NEWEST,
+    // Место освобождает самое старое ожидающее обновление того же чата; если у чата очереди нет - как REJECT_NEWEST
+    DROP_OLDEST_PER_CHAT,
+    // Как REJECT_NEWEST, но пользователь получает заранее подготовленный ответ "бот перегружен"
+    REPLY_BUSY
+}
@@ -0,0 +1,36 @@
+package com.utils.services;
+
+import okhttp3.Dns;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+
+// Кэширует результаты DNS, чтобы каждый новый сокет к api.open-meteo.com и nominatim не ждал резолвера
+public class CachingDns implements Dns {
+    private final Dns delegate;
+    private final TtlCache<String, List<InetAddress>> cache;
+
+    public CachingDns(Duration ttl) {
+        this(Dns.SYSTEM, new TtlCache<>(64, ttl));
+    }
+
+    public CachingDns(Dns delegate, TtlCache<String, List<InetAddress>> cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+        List<InetAddress> addresses = cache.get(hostname);
+        if (addresses == null) {
+            addresses = List.copyOf(delegate.lookup(hostname));
+            cache.put(hostname, addresses);
+        }
+        return addresses;
+    }
+
+    public TtlCache<String, List<InetAddress>> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,272 @@
+package com.utils.services;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Почтовый ящик на каждый чат: задачи одного чата выполняются строго по очереди,
+// разные чаты - параллельно, каждый ящик разбирается в своём виртуальном потоке.
+// Пустой ящик удаляется, так что память пропорциональна числу активных чатов.
+//
+// Контроль допуска (enableAdmissionControl) ограничивает число ожидающих задач во всех ящиках
+// и следит за временем ожидания: если задачи дольше цели ждут своей очереди на протяжении
+// целого интервала цели, новые задачи отсекаются по AdmissionPolicy ещё до заполнения очереди.
+public class ChatDispatcher implements AutoCloseable {
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile long latencyTargetNanos;
+    private volatile AdmissionPolicy policy = AdmissionPolicy.REJECT_NEWEST;
+    // Предел одновременно выполняемых задач во всех ящиках (limitConcurrency), null - без предела
+    private volatile Semaphore concurrency;
+    // Принятые, но ещё не начатые задачи
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong aboveTargetSinceNanos = new AtomicLong();
+    private volatile long overloadedUntilNanos = System.nanoTime();
+    private final LatencyRecorder queueWait = new LatencyRecorder();
+    private final LatencyRecorder latency = new LatencyRecorder();
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong droppedOldest = new AtomicLong();
+
+    private static final class Task {
+        final Runnable action;
+        final Runnable onShed;
+        final long enqueuedNanos = System.nanoTime();
+
+        Task(Runnable action, Runnable onShed) {
+            this.action = action;
+            this.onShed = onShed;
+        }
+    }
+
+    private final class Mailbox implements Runnable {
+        final long chatId;
+        final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Mailbox(long chatId) {
+            this.chatId = chatId;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                // Разрешение берётся до извлечения задачи: пока его нет, задача остаётся в очереди,
+                // учитывается в её глубине и может быть отброшена политикой допуска
+                while (!tasks.isEmpty()) {
+                    Semaphore permits = concurrency;
+                    if (permits != null) {
+                        permits.acquireUninterruptibly();
+                    }
+                    try {
+                        Task task = tasks.poll();
+                        if (task != null) {
+                            pending.decrementAndGet();
+                            observeWait(System.nanoTime() - task.enqueuedNanos);
+                            runTask(task);
+                        }
+                    } finally {
+                        if (permits != null) {
+                            permits.release();
+                        }
+                    }
+                }
+
+                scheduled.set(false);
+                // Задача могла прийти между poll и сбросом флага - тогда продолжаем сами
+                if (tasks.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    break;
+                }
+            }
+            // Удаляем под блокировкой ключа, чтобы не потерять задачу, добавленную в этот момент
+            mailboxes.computeIfPresent(chatId, (id, mailbox) ->
+                    mailbox == this && tasks.isEmpty() && !scheduled.get() ? null : mailbox);
+        }
+    }
+
+    public ChatDispatcher() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public ChatDispatcher(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // capacity - сколько задач может ждать во всех ящиках вместе, latencyTarget - допустимое ожидание в очереди
+    public void enableAdmissionControl(int capacity, Duration latencyTarget, AdmissionPolicy policy) {
+        if (capacity <= 0 || latencyTarget.isNegative() || latencyTarget.isZero()) {
+            throw new IllegalArgumentException("Ёмкость очереди и цель по задержке должны быть положительными");
+        }
+        this.policy = policy;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.capacity = capacity;
+    }
+
+    // Не больше maxRunning задач выполняются одновременно; остальные ждут в своих ящиках
+    public void limitConcurrency(int maxRunning) {
+        if (maxRunning <= 0) {
+            throw new IllegalArgumentException("Предел одновременных задач должен быть положительным: " + maxRunning);
+        }
+        concurrency = new Semaphore(maxRunning, true);
+    }
+
+    public boolean dispatch(long chatId, Runnable task) {
+        return dispatch(chatId, task, null);
+    }
+
+    // false - задача отсечена сразу. onShed вызывается для каждой отсечённой задачи: и для новой,
+    // и для старой, уступившей ей место (DROP_OLDEST_PER_CHAT)
+    public boolean dispatch(long chatId, Runnable task, Runnable onShed) {
+        dispatched.incrementAndGet();
+        Task entry = new Task(task, onShed);
+
+        if (!isOverloaded() && reserve()) {
+            Mailbox mailbox = mailboxes.compute(chatId, (id, existing) -> {
+                Mailbox target = existing != null ? existing : new Mailbox(id);
+                target.tasks.add(entry);
+                return target;
+            });
+            mailbox.schedule();
+            return true;
+        }
+
+        if (policy == AdmissionPolicy.DROP_OLDEST_PER_CHAT) {
+            Task[] oldest = new Task[1];
+            Mailbox mailbox = mailboxes.computeIfPresent(chatId, (id, existing) -> {
+                oldest[0] = existing.tasks.poll();
+                if (oldest[0] != null) {
+                    existing.tasks.add(entry);
+                }
+                return existing;
+            });
+            if (oldest[0] != null) {
+                droppedOldest.incrementAndGet();
+                mailbox.schedule();
+                shed(oldest[0]);
+                return true;
+            }
+        }
+
+        rejected.incrementAndGet();
+        shed(entry);
+        return false;
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = pending.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Перегрузка - ожидание выше цели держится дольше самой цели. Признак истекает сам через интервал цели:
+    // если все новые задачи отсекаются и очередь не движется, часть задач снова пропускается на пробу
+    private void observeWait(long waitNanos) {
+        queueWait.record(waitNanos);
+        long target = latencyTargetNanos;
+        if (target == 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (waitNanos <= target) {
+            aboveTargetSinceNanos.set(0);
+            overloadedUntilNanos = now;
+            return;
+        }
+        if (aboveTargetSinceNanos.compareAndSet(0, now)) {
+            return;
+        }
+        if (now - aboveTargetSinceNanos.get() >= target) {
+            overloadedUntilNanos = now + target;
+        }
+    }
+
+    public boolean isOverloaded() {
+        return latencyTargetNanos > 0 && System.nanoTime() - overloadedUntilNanos < 0;
+    }
+
+    private void shed(Task task) {
+        if (task.onShed == null) {
+            return;
+        }
+        try {
+            task.onShed.run();
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при отбрасывании обновления: " + e.getMessage());
+        }
+    }
+
+    private void runTask(Task task) {
+        try {
+            task.action.run();
+        } catch (Throwable e) {
+            failed.incrementAndGet();
+            System.err.println("Ошибка при обработке обновления: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            latency.record(System.nanoTime() - task.enqueuedNanos);
+            completed.incrementAndGet();
+        }
+    }
+
+    public int getActiveChats() { return mailboxes.size(); }
+    public long getDispatched() { return dispatched.get(); }
+    public long getCompleted() { return completed.get(); }
+    public long getFailed() { return failed.get(); }
+    public int getPending() { return pending.get(); }
+    public int getCapacity() { return capacity; }
+    public long getRejected() { return rejected.get(); }
+    public long getDroppedOldest() { return droppedOldest.get(); }
+    public long getShed() { return rejected.get() + droppedOldest.get(); }
+    // Время от приёма задачи до начала её выполнения
+    public LatencyRecorder getQueueWait() { return queueWait; }
+    // Время от приёма задачи до конца её выполнения
+    public LatencyRecorder getLatency() { return latency; }
+
+    // Дожидается уже принятых задач
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ChatDispatcher{activeChats=%d, pending=%d, dispatched=%d, completed=%d, failed=%d, "
+                        + "rejected=%d, droppedOldest=%d, overloaded=%b, queueWait=[%s], latency=[%s]}",
+                mailboxes.size(), pending.get(), dispatched.get(), completed.get(), failed.get(),
+                rejected.get(), droppedOldest.get(), isOverloaded(), queueWait, latency);
+    }
+}
@@ -0,0 +1,282 @@
+package com.utils.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+// Нечёткий поиск по названиям городов: триграммы для отбора кандидатов + расстояние Левенштейна.
+// Одна правка меняет не больше трёх триграмм, поэтому кандидат с расстоянием d делит с запросом
+// не меньше (число триграмм запроса - 3d) триграмм - остальные отсекаются без подсчёта расстояния.
+// Для автодополнения (inline-режим) рядом лежит перестановка названий в алфавитном порядке.
+public final class CityNameIndex {
+    private static final int MAX_INPUT_LENGTH = 64;
+    private static final int MAX_PREFIX_SCAN = 1_000;
+    private static final char BOUNDARY = '\u0000';
+
+    private final String[] names;   // нормализованные названия и синонимы
+    private final String[] labels;  // что показать пользователю (название города)
+    private final long[] trigrams;  // отсортированные триграммы
+    private final int[] offsets;    // postings[offsets[i]..offsets[i+1]) - названия с триграммой i
+    private final int[] postings;
+    private final int[] byName;     // номера названий по алфавиту - префикс занимает непрерывный диапазон
+
+    public static final class Match {
+        private final String name;
+        private final String label;
+        private final int distance;
+
+        Match(String name, String label, int distance) {
+            this.name = name;
+            this.label = label;
+            this.distance = distance;
+        }
+
+        // Нормализованное название, по которому найден город
+        public String getName() { return name; }
+        public String getLabel() { return label; }
+        public int getDistance() { return distance; }
+
+        @Override
+        public String toString() {
+            return label + " (" + distance + ")";
+        }
+    }
+
+    // names: нормализованное название -> подпись города
+    public CityNameIndex(Map<String, String> names) {
+        this.names = new String[names.size()];
+        this.labels = new String[names.size()];
+
+        Map<Long, List<Integer>> postingLists = new HashMap<>();
+        int id = 0;
+        for (Map.Entry<String, String> entry : names.entrySet()) {
+            this.names[id] = Geocoding.normalize(entry.getKey());
+            this.labels[id] = entry.getValue();
+            for (long trigram : distinctTrigrams(this.names[id])) {
+                postingLists.computeIfAbsent(trigram, k -> new ArrayList<>()).add(id);
+            }
+            id++;
+        }
+
+        this.trigrams = postingLists.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        this.offsets = new int[trigrams.length + 1];
+        int total = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            offsets[i] = total;
+            total += postingLists.get(trigrams[i]).size();
+        }
+        offsets[trigrams.length] = total;
+
+        this.postings = new int[total];
+        for (int i = 0; i < trigrams.length; i++) {
+            List<Integer> ids = postingLists.get(trigrams[i]);
+            for (int j = 0; j < ids.size(); j++) {
+                postings[offsets[i] + j] = ids.get(j);
+            }
+        }
+
+        this.byName = IntStream.range(0, this.names.length).boxed()
+                .sorted((a, b) -> this.names[a].compareTo(this.names[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    public static CityNameIndex fromGazetteer(Gazetteer gazetteer) {
+        Map<String, String> names = new HashMap<>();
+        gazetteer.forEachName((name, displayName) -> names.put(name, cityLabel(displayName)));
+        return new CityNameIndex(names);
+    }
+
+    // "Москва, Россия" -> "Москва"
+    static String cityLabel(String displayName) {
+        int comma = displayName.indexOf(',');
+        return comma < 0 ? displayName : displayName.substring(0, comma);
+    }
+
+    // Однозначное совпадение с не более чем одной опечаткой, иначе null
+    public Match resolve(String input) {
+        List<Match> matches = suggest(input, 2);
+        if (matches.isEmpty() || matches.getFirst().getDistance() > 1) {
+            return null;
+        }
+        if (matches.size() > 1 && matches.get(1).getDistance() == matches.getFirst().getDistance()) {
+            return null;
+        }
+        return matches.getFirst();
+    }
+
+    // Ближайшие города по возрастанию расстояния, по одному варианту на город
+    public List<Match> suggest(String input, int limit) {
+        String query = Geocoding.normalize(input);
+        if (query.isEmpty() || query.length() > MAX_INPUT_LENGTH || names.length == 0) {
+            return List.of();
+        }
+
+        int maxDistance = maxDistance(query.length());
+        long[] queryTrigrams = distinctTrigrams(query);
+        int minShared = queryTrigrams.length - 3 * maxDistance;
+
+        int[] hits = collectPostings(queryTrigrams);
+        Arrays.sort(hits);
+
+        List<Match> matches = new ArrayList<>();
+        int[] previous = new int[MAX_INPUT_LENGTH + 1];
+        int[] current = new int[MAX_INPUT_LENGTH + 1];
+        for (int i = 0; i < hits.length; ) {
+            int candidate = hits[i];
+            int shared = 0;
+            while (i < hits.length && hits[i] == candidate) {
+                shared++;
+                i++;
+            }
+            if (shared < minShared) {
+                continue;
+            }
+
+            int distance = boundedDistance(query, names[candidate], maxDistance, previous, current);
+            if (distance <= maxDistance) {
+                matches.add(new Match(names[candidate], labels[candidate], distance));
+            }
+        }
+
+        return closest(matches, limit);
+    }
+
+    // Города, название или синоним которых начинается с input; сначала самые короткие дополнения.
+    // distance у результата - сколько символов не хватает до полного названия
+    public List<Match> startingWith(String input, int limit) {
+        String prefix = Geocoding.normalize(input);
+        if (prefix.isEmpty() || prefix.length() > MAX_INPUT_LENGTH || names.length == 0) {
+            return List.of();
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = lowerBound(prefix); i < byName.length && matches.size() < MAX_PREFIX_SCAN; i++) {
+            String name = names[byName[i]];
+            if (!name.startsWith(prefix)) {
+                break;
+            }
+            matches.add(new Match(name, labels[byName[i]], name.length() - prefix.length()));
+        }
+        return closest(matches, limit);
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = byName.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (names[byName[middle]].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static List<Match> closest(List<Match> matches, int limit) {
+        matches.sort((a, b) -> a.distance != b.distance
+                ? Integer.compare(a.distance, b.distance)
+                : a.label.compareTo(b.label));
+
+        List<Match> result = new ArrayList<>(Math.min(limit, matches.size()));
+        Set<String> seen = new HashSet<>();
+        for (Match match : matches) {
+            if (result.size() == limit) {
+                break;
+            }
+            if (seen.add(match.label)) {
+                result.add(match);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    private int[] collectPostings(long[] queryTrigrams) {
+        int total = 0;
+        int[] found = new int[queryTrigrams.length];
+        for (int i = 0; i < queryTrigrams.length; i++) {
+            found[i] = Arrays.binarySearch(trigrams, queryTrigrams[i]);
+            if (found[i] >= 0) {
+                total += offsets[found[i] + 1] - offsets[found[i]];
+            }
+        }
+
+        int[] hits = new int[total];
+        int position = 0;
+        for (int index : found) {
+            if (index >= 0) {
+                int length = offsets[index + 1] - offsets[index];
+                System.arraycopy(postings, offsets[index], hits, position, length);
+                position += length;
+            }
+        }
+        return hits;
+    }
+
+    private static int maxDistance(int length) {
+        if (length <= 4) {
+            return 1;
+        }
+        return length <= 8 ? 2 : 3;
+    }
+
+    // Левенштейн по двум строкам массива; прекращает счёт, как только весь ряд превысил предел
+    private static int boundedDistance(String a, String b, int limit, int[] previous, int[] current) {
+        if (Math.abs(a.length() - b.length()) > limit || b.length() > MAX_INPUT_LENGTH) {
+            return limit + 1;
+        }
+
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    // Триграммы строки с границами, по 16 бит на символ
+    private static long[] distinctTrigrams(String value) {
+        int length = value.length() + 2;
+        long[] result = new long[Math.max(0, length - 2)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) charAt(value, i - 1) << 32) | ((long) charAt(value, i) << 16) | charAt(value, i + 1);
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return distinct == result.length ? result : Arrays.copyOf(result, distinct);
+    }
+
+    private static char charAt(String value, int index) {
+        return index < 0 || index >= value.length() ? BOUNDARY : value.charAt(index);
+    }
+}
@@ -0,0 +1,223 @@
+package com.utils.services;
+
+import com.utils.models.UserSession;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Холодный уровень сессий: хэш-таблица фиксированных ячеек в файле, отображённом в память.
+// Простаивающие сессии переезжают сюда из SessionTable и не занимают кучу; при следующем
+// сообщении пользователя сессия читается обратно по chatId.
+//   заголовок: int magic, int ёмкость, int число записей
+//   ячейка (128 байт): long chatId, byte занята, byte активна, byte состояние, byte -, short длина города + UTF-8
+public class ColdSessionTier implements AutoCloseable {
+    private static final int MAGIC = 0x43534E31; // "CSN1"
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 128;
+    private static final int CITY_OFFSET = 14;
+    public static final int MAX_CITY_BYTES = SLOT_BYTES - CITY_OFFSET;
+    private static final int NO_CITY = 0xFFFF;
+    private static final float LOAD_FACTOR = 0.7f;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path file;
+    private MappedByteBuffer data;
+    private int capacity;
+    private int size;
+
+    public ColdSessionTier(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (Files.exists(file)) {
+            map();
+            if (data.getInt(0) != MAGIC) {
+                throw new IOException("Неверный формат холодного хранилища сессий: " + file);
+            }
+            capacity = data.getInt(4);
+            size = data.getInt(8);
+        } else {
+            create(file, INITIAL_CAPACITY);
+            map();
+            capacity = INITIAL_CAPACITY;
+        }
+    }
+
+    // Сессии с городом длиннее ячейки не помещаются - их лучше оставить в памяти
+    public static boolean fits(UserSession session) {
+        return session.getCity() == null
+                || session.getCity().getBytes(StandardCharsets.UTF_8).length <= MAX_CITY_BYTES;
+    }
+
+    public synchronized void put(UserSession session) throws IOException {
+        byte[] city = session.getCity() != null ? session.getCity().getBytes(StandardCharsets.UTF_8) : null;
+        if (city != null && city.length > MAX_CITY_BYTES) {
+            throw new IllegalArgumentException("Слишком длинное название города для холодного хранилища");
+        }
+
+        if (size + 1 > capacity * LOAD_FACTOR) {
+            grow();
+        }
+
+        int slot = slotOf(session.getChatId());
+        if (data.get(offset(slot) + 8) == 0) {
+            size++;
+            data.putInt(8, size);
+        }
+        write(data, offset(slot), session, city);
+    }
+
+    public synchronized UserSession get(long chatId) {
+        int slot = slotOf(chatId);
+        int offset = offset(slot);
+        if (data.get(offset + 8) == 0) {
+            return null;
+        }
+
+        boolean active = data.get(offset + 9) != 0;
+        byte state = data.get(offset + 10);
+        int cityLength = Short.toUnsignedInt(data.getShort(offset + 12));
+        String city = null;
+        if (cityLength != NO_CITY) {
+            byte[] bytes = new byte[cityLength];
+            data.get(offset + CITY_OFFSET, bytes);
+            city = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new UserSession(chatId, active, state, city);
+    }
+
+    // Удаление со сдвигом назад: следующие ячейки той же цепочки пробирования переезжают в дыру,
+    // поэтому поиск по-прежнему останавливается на первой свободной ячейке
+    public synchronized boolean remove(long chatId) {
+        int hole = slotOf(chatId);
+        if (data.get(offset(hole) + 8) == 0) {
+            return false;
+        }
+
+        int mask = capacity - 1;
+        byte[] slotBytes = new byte[SLOT_BYTES];
+        for (int next = (hole + 1) & mask; data.get(offset(next) + 8) != 0; next = (next + 1) & mask) {
+            int home = (int) SessionTable.mix(data.getLong(offset(next))) & mask;
+            // Запись можно сдвинуть, если её домашняя ячейка не лежит между дырой и текущей позицией
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                data.get(offset(next), slotBytes);
+                data.put(offset(hole), slotBytes);
+                hole = next;
+            }
+        }
+
+        data.put(offset(hole) + 8, (byte) 0);
+        size--;
+        data.putInt(8, size);
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getFileBytes() {
+        return data.capacity();
+    }
+
+    // Сбрасывает изменённые страницы на диск
+    public synchronized void flush() {
+        data.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        data.force();
+    }
+
+    private int slotOf(long chatId) {
+        int mask = capacity - 1;
+        int slot = (int) SessionTable.mix(chatId) & mask;
+        while (true) {
+            int offset = offset(slot);
+            if (data.get(offset + 8) == 0 || data.getLong(offset) == chatId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static void write(MappedByteBuffer target, int offset, UserSession session, byte[] city) {
+        target.putLong(offset, session.getChatId());
+        target.put(offset + 9, (byte) (session.isActive() ? 1 : 0));
+        target.put(offset + 10, session.getState());
+        target.putShort(offset + 12, (short) (city != null ? city.length : NO_CITY));
+        if (city != null) {
+            target.put(offset + CITY_OFFSET, city);
+        }
+        // Флаг занятости последним: ячейка не выглядит занятой, пока не записана целиком
+        target.put(offset + 8, (byte) 1);
+    }
+
+    // Перестраивает таблицу в файл вдвое большей ёмкости и атомарно подменяет старый
+    private void grow() throws IOException {
+        int newCapacity = capacity * 2;
+        if ((long) HEADER_BYTES + (long) newCapacity * SLOT_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Холодное хранилище сессий переполнено");
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        create(temp, newCapacity);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int mask = newCapacity - 1;
+            for (int slot = 0; slot < capacity; slot++) {
+                int from = offset(slot);
+                if (data.get(from + 8) == 0) {
+                    continue;
+                }
+                long chatId = data.getLong(from);
+                int to = (int) SessionTable.mix(chatId) & mask;
+                while (target.get(offset(to) + 8) != 0) {
+                    to = (to + 1) & mask;
+                }
+                target.put(offset(to), data, from, SLOT_BYTES);
+            }
+            target.putInt(8, size);
+            target.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        map();
+        capacity = newCapacity;
+    }
+
+    private static void create(Path target, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) capacity * SLOT_BYTES);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, capacity);
+            buffer.putInt(8, 0);
+            buffer.force();
+        }
+    }
+
+    private void map() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            data = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ColdSessionTier{sessions=%d, capacity=%d, file=%dKB}",
+                size, capacity, data.capacity() / 1024);
+    }
+}
@@ -90,31 +90,7 @@ public class DialogLogic implements IDialogLogic {
 
     private UserAnswerStatus getWeatherForPeriod(int days) {
         try {
-            String weather;
-            switch (days) {
-                case 1:
-                    weather = weatherFormatter.getQuickWeather(currentCity);
-                    break;
-                case 2:
-                    weather = weatherFormatter.formatTomorrowWeather(currentCity);
-                    break;
-                case 3:
-                    var responseFor3Days = weatherAPI.getWeatherByCity(currentCity, 3);
-                    var coordsFor3Days = weatherAPI.getGeocoding().getCoordinates(currentCity);
-                    weather = weatherFormatter.formatWeatherResponse(
-                            responseFor3Days, coordsFor3Days.getDisplayName(), 3
-                    );
-                    break;
-                case 7:
-                    var responseFor7Days = weatherAPI.getWeatherByCity(currentCity, 3);
-                    var coordsFor7Days = weatherAPI.getGeocoding().getCoordinates(currentCity);
-                    weather = weatherFormatter.formatWeatherResponse(
-                            responseFor7Days, coordsFor7Days.getDisplayName(), 3
-                    );
-                    break;
-                default:
-                    weather = weatherFormatter.getQuickWeather(currentCity);
-            }
+            String weather = weatherFormatter.formatForPeriod(currentCity, days);
             return new UserAnswerStatus(true, weather, false);
         } catch (Exception e) {
             return new UserAnswerStatus(false,
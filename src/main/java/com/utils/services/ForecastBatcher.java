@@ -0,0 +1,177 @@
+package com.utils.services;
+
+import com.utils.models.OpenMeteoResponse;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Собирает промахи кэша прогнозов за короткое окно и отправляет их одним запросом к Open-Meteo
+// со списками latitude/longitude через запятую, затем раздаёт элементы ответа ожидающим
+public class ForecastBatcher {
+    private final OkHttpClient client;
+    private final long windowMillis;
+    private final int maxLocations;
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    // Номер собираемой пачки и её таймер окна: таймер, переживший досрочную отправку своей пачки,
+    // не должен отправить следующую раньше её окна
+    private long generation;
+    private ScheduledFuture<?> windowTimer;
+
+    private final AtomicLong locations = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private static class Pending {
+        final double lat;
+        final double lon;
+        final int days;
+        final CompletableFuture<OpenMeteoResponse> future = new CompletableFuture<>();
+
+        Pending(double lat, double lon, int days) {
+            this.lat = lat;
+            this.lon = lon;
+            this.days = days;
+        }
+    }
+
+    public ForecastBatcher(OkHttpClient client, Duration window, int maxLocations) {
+        if (maxLocations <= 0) {
+            throw new IllegalArgumentException("Размер пачки должен быть положительным: " + maxLocations);
+        }
+        this.client = client;
+        this.windowMillis = window.toMillis();
+        this.maxLocations = maxLocations;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "forecast-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<OpenMeteoResponse> submit(double lat, double lon, int days) {
+        Pending request = new Pending(lat, lon, days);
+        locations.incrementAndGet();
+
+        synchronized (lock) {
+            pending.add(request);
+            if (pending.size() >= maxLocations) {
+                if (windowTimer != null) {
+                    windowTimer.cancel(false);
+                    windowTimer = null;
+                }
+                scheduler.execute(this::flush);
+            } else if (pending.size() == 1) {
+                long batch = generation;
+                windowTimer = scheduler.schedule(() -> flushWindow(batch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        return request.future;
+    }
+
+    private void flushWindow(long batch) {
+        synchronized (lock) {
+            if (batch != generation) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    private void flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+            generation++;
+            windowTimer = null;
+        }
+
+        // forecast_days общий для всего запроса, поэтому разные горизонты уходят отдельными запросами
+        Map<Integer, List<Pending>> byDays = new LinkedHashMap<>();
+        for (Pending request : batch) {
+            byDays.computeIfAbsent(request.days, days -> new ArrayList<>()).add(request);
+        }
+
+        for (Map.Entry<Integer, List<Pending>> group : byDays.entrySet()) {
+            List<Pending> requests = group.getValue();
+            for (int from = 0; from < requests.size(); from += maxLocations) {
+                send(requests.subList(from, Math.min(from + maxLocations, requests.size())), group.getKey());
+            }
+        }
+    }
+
+    private void send(List<Pending> requests, int days) {
+        batches.incrementAndGet();
+
+        StringBuilder latitudes = new StringBuilder();
+        StringBuilder longitudes = new StringBuilder();
+        for (Pending request : requests) {
+            if (latitudes.length() > 0) {
+                latitudes.append(',');
+                longitudes.append(',');
+            }
+            latitudes.append(String.format(Locale.ROOT, "%.4f", request.lat));
+            longitudes.append(String.format(Locale.ROOT, "%.4f", request.lon));
+        }
+
+        Request request = new Request.Builder()
+                .url(WeatherAPI.forecastUrl(latitudes.toString(), longitudes.toString(), days))
+                .build();
+
+        AsyncHttp.call(client, request, response -> {
+            if (!response.isSuccessful()) {
+                throw new IOException("Ошибка при запросе к API погоды: " + response.code());
+            }
+            return OpenMeteoDecoder.decodeAll(response.body().source());
+        }).whenComplete((responses, error) -> {
+            if (error == null && responses.size() != requests.size()) {
+                error = new IOException(String.format(
+                        "Open-Meteo вернул %d прогнозов вместо %d", responses.size(), requests.size()));
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                if (error != null) {
+                    requests.get(i).future.completeExceptionally(error);
+                } else {
+                    requests.get(i).future.complete(responses.get(i));
+                }
+            }
+        });
+    }
+
+    public long getLocations() { return locations.get(); }
+    public long getBatches() { return batches.get(); }
+
+    public int getPending() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ForecastBatcher{locations=%d, batches=%d}", locations.get(), batches.get());
+    }
+}
@@ -0,0 +1,384 @@
+package com.utils.services;
+
+import com.utils.models.Coordinates;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+// Локальный справочник городов в компактном бинарном формате:
+//   заголовок: magic, число мест, число названий, смещение строк, long хэш исходного TSV
+//   места:     float lat, float lon, int смещение отображаемого имени (12 байт)
+//   названия:  long хэш, int смещение названия, int номер места (16 байт), отсортированы по хэшу
+//   строки:    unsigned short длина + UTF-8
+// Файл отображается в память, поиск - бинарный по хэшу без разбора файла в объекты.
+public final class Gazetteer {
+    public static final String BUNDLED_RESOURCE = "/gazetteer.tsv";
+
+    private static final int MAGIC = 0x475A5432; // "GZT2"
+    private static final int HEADER_BYTES = 24;
+    private static final int PLACE_BYTES = 12;
+    private static final int NAME_BYTES = 16;
+
+    private final ByteBuffer data;
+    private final int placeCount;
+    private final int nameCount;
+    private final int namesOffset;
+    private final int stringsOffset;
+    private final long sourceHash;
+    private final long loadNanos;
+
+    private Gazetteer(ByteBuffer data, long loadNanos) throws IOException {
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException("Неверный формат файла справочника городов");
+        }
+        this.data = data;
+        this.placeCount = data.getInt(4);
+        this.nameCount = data.getInt(8);
+        this.namesOffset = HEADER_BYTES + placeCount * PLACE_BYTES;
+        this.stringsOffset = data.getInt(12);
+        this.sourceHash = data.getLong(16);
+        if (placeCount < 0 || nameCount < 0
+                || stringsOffset != namesOffset + nameCount * NAME_BYTES
+                || stringsOffset > data.capacity()) {
+            throw new IOException("Повреждён файл справочника городов");
+        }
+        this.loadNanos = loadNanos;
+    }
+
+    // Отображает файл в память; страницы подгружаются ОС по мере обращения
+    public static Gazetteer open(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Gazetteer(data, System.nanoTime() - start);
+        }
+    }
+
+    public static Gazetteer fromBuffer(ByteBuffer data) throws IOException {
+        return new Gazetteer(data, 0);
+    }
+
+    // Справочник из ресурса приложения, собирается в куче
+    public static Gazetteer loadBundled() throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer data = bundledBuilder().build();
+        return new Gazetteer(data, System.nanoTime() - start);
+    }
+
+    // Открывает бинарный файл; если его нет, он старого формата или собран из другой версии ресурса -
+    // пересобирает его из ресурса приложения
+    public static Gazetteer openOrCompile(Path file) throws IOException {
+        byte[] resource = bundledResource();
+        long sourceHash = hash(resource);
+        if (Files.exists(file)) {
+            try {
+                Gazetteer gazetteer = open(file);
+                if (gazetteer.sourceHash == sourceHash) {
+                    return gazetteer;
+                }
+            } catch (IOException e) {
+                System.err.println("Справочник городов " + file + " будет пересобран: " + e.getMessage());
+            }
+        }
+        builderFrom(resource).writeTo(file);
+        return open(file);
+    }
+
+    private static Builder bundledBuilder() throws IOException {
+        return builderFrom(bundledResource());
+    }
+
+    private static Builder builderFrom(byte[] resource) throws IOException {
+        return new Builder()
+                .sourceHash(hash(resource))
+                .readTsv(new InputStreamReader(new ByteArrayInputStream(resource), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] bundledResource() throws IOException {
+        try (InputStream in = Gazetteer.class.getResourceAsStream(BUNDLED_RESOURCE)) {
+            if (in == null) {
+                throw new IOException("Не найден ресурс " + BUNDLED_RESOURCE);
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    public Coordinates lookup(String locationName) {
+        return find(Geocoding.normalize(locationName));
+    }
+
+    // Ключ уже нормализован через Geocoding.normalize
+    Coordinates find(String key) {
+        if (nameCount == 0) {
+            return null;
+        }
+
+        long hash = hash(key);
+        int index = lowerBound(hash);
+        if (index < 0) {
+            return null;
+        }
+
+        byte[] keyBytes = null;
+        for (int i = index; i < nameCount; i++) {
+            int entry = namesOffset + i * NAME_BYTES;
+            if (data.getLong(entry) != hash) {
+                break;
+            }
+            if (keyBytes == null) {
+                keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            }
+            if (stringEquals(data.getInt(entry + 8), keyBytes)) {
+                return place(data.getInt(entry + 12));
+            }
+        }
+        return null;
+    }
+
+    // Обходит все названия: нормализованное название и отображаемое имя его места
+    public void forEachName(BiConsumer<String, String> action) {
+        for (int i = 0; i < nameCount; i++) {
+            int entry = namesOffset + i * NAME_BYTES;
+            int place = data.getInt(entry + 12);
+            action.accept(readString(data.getInt(entry + 8)),
+                    readString(data.getInt(HEADER_BYTES + place * PLACE_BYTES + 8)));
+        }
+    }
+
+    private int lowerBound(long hash) {
+        int low = 0;
+        int high = nameCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = data.getLong(namesOffset + mid * NAME_BYTES);
+            if (value < hash) {
+                low = mid + 1;
+            } else {
+                if (value == hash) {
+                    found = mid;
+                }
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private Coordinates place(int index) {
+        int offset = HEADER_BYTES + index * PLACE_BYTES;
+        return new Coordinates(
+                data.getFloat(offset),
+                data.getFloat(offset + 4),
+                readString(data.getInt(offset + 8))
+        );
+    }
+
+    private boolean stringEquals(int offset, byte[] expected) {
+        int position = stringsOffset + offset;
+        int length = Short.toUnsignedInt(data.getShort(position));
+        if (length != expected.length) {
+            return false;
+        }
+        position += 2;
+        for (int i = 0; i < length; i++) {
+            if (data.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readString(int offset) {
+        int position = stringsOffset + offset;
+        byte[] bytes = new byte[Short.toUnsignedInt(data.getShort(position))];
+        data.get(position + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // FNV-1a по символам строки, без промежуточного массива байт
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public int getPlaceCount() { return placeCount; }
+    public int getNameCount() { return nameCount; }
+    public long getSourceHash() { return sourceHash; }
+    public long getSizeBytes() { return data.capacity(); }
+    public long getLoadMillis() { return loadNanos / 1_000_000; }
+
+    @Override
+    public String toString() {
+        return String.format("Gazetteer{places=%d, names=%d, size=%dKB, loadedIn=%dms, mapped=%b}",
+                placeCount, nameCount, data.capacity() / 1024, getLoadMillis(), data.isDirect());
+    }
+
+    // FNV-1a по байтам ресурса - отпечаток версии, из которой собран бинарный файл
+    static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public static final class Builder {
+        private final List<float[]> coordinates = new ArrayList<>();
+        private final List<String> displayNames = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> namePlaces = new ArrayList<>();
+        private final Set<String> seen = new HashSet<>();
+        private long sourceHash;
+
+        // Отпечаток исходных данных, записывается в заголовок
+        public Builder sourceHash(long sourceHash) {
+            this.sourceHash = sourceHash;
+            return this;
+        }
+
+        // Повторное название (после нормализации) остаётся за первым местом
+        public Builder add(double lat, double lon, String displayName, Collection<String> aliases) {
+            int place = displayNames.size();
+            coordinates.add(new float[] {(float) lat, (float) lon});
+            displayNames.add(displayName);
+
+            for (String alias : aliases) {
+                String key = Geocoding.normalize(alias);
+                if (!key.isEmpty() && seen.add(key)) {
+                    names.add(key);
+                    namePlaces.add(place);
+                }
+            }
+            return this;
+        }
+
+        // Строки вида: широта<TAB>долгота<TAB>отображаемое имя<TAB>название|синоним|...
+        public Builder readTsv(Reader reader) throws IOException {
+            BufferedReader lines = new BufferedReader(reader);
+            String line;
+            int lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] columns = line.split("\t");
+                if (columns.length < 4) {
+                    throw new IOException("Строка " + lineNumber + ": ожидалось 4 колонки");
+                }
+                try {
+                    add(Double.parseDouble(columns[0]), Double.parseDouble(columns[1]),
+                            columns[2], Arrays.asList(columns[3].split("\\|")));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Строка " + lineNumber + ": неверные координаты", e);
+                }
+            }
+            return this;
+        }
+
+        public ByteBuffer build() {
+            StringPool strings = new StringPool();
+            int[] displayOffsets = new int[displayNames.size()];
+            for (int i = 0; i < displayOffsets.length; i++) {
+                displayOffsets[i] = strings.add(displayNames.get(i));
+            }
+
+            Integer[] order = new Integer[names.size()];
+            long[] hashes = new long[names.size()];
+            int[] nameOffsets = new int[names.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+                hashes[i] = hash(names.get(i));
+                nameOffsets[i] = strings.add(names.get(i));
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+
+            int stringsOffset = HEADER_BYTES + displayOffsets.length * PLACE_BYTES + order.length * NAME_BYTES;
+            ByteBuffer buffer = ByteBuffer.allocate(stringsOffset + strings.size());
+            buffer.putInt(MAGIC)
+                    .putInt(displayOffsets.length)
+                    .putInt(order.length)
+                    .putInt(stringsOffset)
+                    .putLong(sourceHash);
+
+            for (int i = 0; i < displayOffsets.length; i++) {
+                float[] point = coordinates.get(i);
+                buffer.putFloat(point[0]).putFloat(point[1]).putInt(displayOffsets[i]);
+            }
+            for (int i : order) {
+                buffer.putLong(hashes[i]).putInt(nameOffsets[i]).putInt(namePlaces.get(i));
+            }
+            buffer.put(strings.bytes, 0, strings.size());
+
+            return buffer.flip();
+        }
+
+        // Пишет во временный файл и переименовывает, чтобы читатели не увидели недописанный справочник
+        public void writeTo(Path file) throws IOException {
+            ByteBuffer buffer = build();
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static final class StringPool {
+        private byte[] bytes = new byte[4096];
+        private int size;
+
+        int add(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF) {
+                throw new IllegalArgumentException("Слишком длинная строка в справочнике: " + value.length());
+            }
+            int offset = size;
+            ensureCapacity(size + 2 + encoded.length);
+            bytes[size++] = (byte) (encoded.length >>> 8);
+            bytes[size++] = (byte) encoded.length;
+            System.arraycopy(encoded, 0, bytes, size, encoded.length);
+            size += encoded.length;
+            return offset;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -10,44 +10,249 @@ import okhttp3.Request;
 import okhttp3.Response;
 import java.io.IOException;
 import java.net.URLEncoder;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 import java.lang.reflect.Type;
 
 public class Geocoding {
-    private final OkHttpClient client = new OkHttpClient();
+    private final OkHttpClient client;
     private final Gson gson = new Gson();
+    private final TtlCache<String, Coordinates> cache;
+    private final SingleFlight<String, Coordinates> requests = new SingleFlight<>();
+    private final NominatimRateLimiter rateLimiter;
+    private volatile Gazetteer gazetteer;
+    private volatile CityNameIndex cityIndex;
+    private volatile GeocodingStore store;
     private static final String NOMINATIM_URL = "https://nominatim.openstreetmap.org/search";
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final Duration DEFAULT_CACHE_TTL = Duration.ofHours(24);
+
+    public Geocoding() {
+        this(new TtlCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL));
+    }
+
+    public Geocoding(TtlCache<String, Coordinates> cache) {
+        this(HttpClients.shared(), cache);
+    }
+
+    public Geocoding(OkHttpClient client) {
+        this(client, new TtlCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL));
+    }
+
+    public Geocoding(OkHttpClient client, TtlCache<String, Coordinates> cache) {
+        this(client, cache, NominatimRateLimiter.shared());
+    }
+
+    public Geocoding(OkHttpClient client, TtlCache<String, Coordinates> cache, NominatimRateLimiter rateLimiter) {
+        this.client = client;
+        this.cache = cache;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public TtlCache<String, Coordinates> getCache() {
+        return cache;
+    }
+
+    public SingleFlight<String, Coordinates> getRequests() {
+        return requests;
+    }
+
+    public NominatimRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    // Локальный справочник проверяется до кэша и сети; null отключает его
+    public void useGazetteer(Gazetteer gazetteer) {
+        this.cityIndex = gazetteer != null ? CityNameIndex.fromGazetteer(gazetteer) : null;
+        this.gazetteer = gazetteer;
+    }
+
+    public Gazetteer getGazetteer() {
+        return gazetteer;
+    }
+
+    // Результаты из сети дописываются в журнал на диске; при подключении журнал загружается в фоне.
+    // Кэш держит только самые востребованные города, остальные читаются из индекса журнала при промахе
+    public CompletableFuture<Integer> useStore(GeocodingStore store) {
+        this.store = store;
+        return store.loadInto(cache);
+    }
+
+    public GeocodingStore getStore() {
+        return store;
+    }
+
+    // Нечёткий индекс по названиям из справочника, null если справочник не подключён
+    public CityNameIndex getCityIndex() {
+        return cityIndex;
+    }
 
     public Coordinates getCoordinates(String locationName) throws IOException {
+        return getCoordinates(locationName, NominatimRateLimiter.Priority.INTERACTIVE);
+    }
+
+    public Coordinates getCoordinates(String locationName, NominatimRateLimiter.Priority priority)
+            throws IOException {
+        String key = normalize(locationName);
+
+        Coordinates cached = findLocally(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        return requests.execute(key, () -> {
+            Coordinates stored = awaitStored(key);
+            if (stored != null) {
+                return stored;
+            }
+
+            AsyncHttp.await(rateLimiter.acquire(priority));
+            Coordinates coordinates = requestCoordinates(locationName);
+            remember(key, coordinates);
+            return coordinates;
+        });
+    }
+
+    // Только справочник и кэш, без запроса к Nominatim; null, если город там не найден
+    public Coordinates getCachedCoordinates(String locationName) {
+        return findLocally(normalize(locationName));
+    }
+
+    public CompletableFuture<Coordinates> getCoordinatesAsync(String locationName) {
+        return getCoordinatesAsync(locationName, NominatimRateLimiter.Priority.INTERACTIVE);
+    }
+
+    public CompletableFuture<Coordinates> getCoordinatesAsync(String locationName,
+                                                          NominatimRateLimiter.Priority priority) {
+        String key = normalize(locationName);
+
+        Coordinates cached = findLocally(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        Request request;
+        try {
+            request = buildRequest(locationName);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<?> loaded = storeLoaded();
+        return requests.executeAsync(key, () -> loaded.isDone()
+                ? fetchAsync(key, locationName, request, priority)
+                : loaded.thenCompose(ignored -> {
+                    Coordinates stored = findLocally(key);
+                    return stored != null
+                            ? CompletableFuture.completedFuture(stored)
+                            : fetchAsync(key, locationName, request, priority);
+                }));
+    }
+
+    private CompletableFuture<Coordinates> fetchAsync(String key, String locationName, Request request,
+                                                      NominatimRateLimiter.Priority priority) {
+        return rateLimiter.acquire(priority)
+                .thenCompose(permit -> AsyncHttp.call(client, request, response -> parseCoordinates(response, locationName)))
+                .thenApply(coordinates -> {
+                    remember(key, coordinates);
+                    return coordinates;
+                });
+    }
+
+    // Пока журнал догружается, промах в кэше ещё не означает, что город неизвестен
+    private Coordinates awaitStored(String key) throws IOException {
+        CompletableFuture<?> loaded = storeLoaded();
+        if (loaded.isDone()) {
+            return null;
+        }
+        AsyncHttp.await(loaded);
+        return findLocally(key);
+    }
+
+    private CompletableFuture<?> storeLoaded() {
+        GeocodingStore current = store;
+        return current != null ? current.whenLoaded() : CompletableFuture.completedFuture(null);
+    }
+
+    private void remember(String key, Coordinates coordinates) {
+        cache.put(key, coordinates);
+
+        // Ключ, уже лежащий в журнале, повторно не дописываем: журнал растёт только новыми городами
+        GeocodingStore current = store;
+        if (current != null && current.find(key) == null) {
+            try {
+                current.append(key, coordinates);
+            } catch (IOException e) {
+                System.err.println("Не удалось сохранить результат геокодирования: " + e.getMessage());
+            }
+        }
+    }
+
+    // "  Москва " и "москва" - один и тот же запрос
+    static String normalize(String locationName) {
+        return locationName.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private Coordinates findLocally(String key) {
+        Gazetteer local = gazetteer;
+        if (local != null) {
+            Coordinates coordinates = local.find(key);
+            if (coordinates != null) {
+                return coordinates;
+            }
+        }
+
+        Coordinates cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        GeocodingStore current = store;
+        Coordinates stored = current != null ? current.find(key) : null;
+        if (stored != null) {
+            cache.put(key, stored);
+        }
+        return stored;
+    }
+
+    private Coordinates requestCoordinates(String locationName) throws IOException {
+        try (Response response = client.newCall(buildRequest(locationName)).execute()) {
+            return parseCoordinates(response, locationName);
+        }
+    }
+
+    private Request buildRequest(String locationName) throws IOException {
         String url = String.format(
                 "%s?q=%s&format=json&limit=1",
                 NOMINATIM_URL,
                 URLEncoder.encode(locationName, "UTF-8")
         );
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(url)
                 .addHeader("User-Agent", "WeatherBot/1.0")
                 .build();
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Ошибка геокодирования: " + response.code());
-            }
+    private Coordinates parseCoordinates(Response response, String locationName) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Ошибка геокодирования: " + response.code());
+        }
 
-            assert response.body() != null;
-            String responseBody = response.body().string();
+        assert response.body() != null;
+        String responseBody = response.body().string();
 
-            Type responseType = new TypeToken<List<NominatimResponse>>(){}.getType();
-            List<NominatimResponse> results = gson.fromJson(responseBody, responseType);
+        Type responseType = new TypeToken<List<NominatimResponse>>(){}.getType();
+        List<NominatimResponse> results = gson.fromJson(responseBody, responseType);
 
-            if (results.isEmpty()) {
-                throw new IOException("Локация не найдена: " + locationName);
-            }
+        if (results.isEmpty()) {
+            throw new IOException("Локация не найдена: " + locationName);
+        }
 
-            NominatimResponse firstResult = results.getFirst();
+        NominatimResponse firstResult = results.getFirst();
 
-            return new Coordinates(firstResult);
-        }
+        return new Coordinates(firstResult);
     }
-}
\ No newline at end of file
+}
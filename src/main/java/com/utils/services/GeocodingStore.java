@@ -0,0 +1,252 @@
+package com.utils.services;
+
+import com.utils.models.Coordinates;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+// Журнал результатов геокодирования на диске, чтобы после перезапуска не ходить в Nominatim заново.
+// Запись: int длина, int CRC32, long время записи, double lat, double lon, ключ и имя (short длина + UTF-8).
+// Побеждает последняя запись по ключу; хвост, оборванный при падении, отбрасывается при загрузке.
+// Живые записи остаются в памяти индексом, который читается при промахе небольшого кэша в Geocoding.
+public class GeocodingStore implements AutoCloseable {
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    // Сжимаем, когда мёртвых записей больше живых (и их достаточно много, чтобы стоило переписывать)
+    private static final int MIN_DEAD_FOR_COMPACTION = 100;
+
+    private final Path file;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final CompletableFuture<Integer> loaded = new CompletableFuture<>();
+    private final Map<String, Record> index = new ConcurrentHashMap<>();
+
+    private FileChannel channel;
+    private long appended;
+    private long compactions;
+
+    public GeocodingStore(Path file, Duration ttl) {
+        this(file, ttl, System::currentTimeMillis);
+    }
+
+    public GeocodingStore(Path file, Duration ttl, LongSupplier clock) {
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    // Читает журнал в фоне и наполняет кэш; future завершается числом загруженных записей
+    public CompletableFuture<Integer> loadInto(TtlCache<String, Coordinates> cache) {
+        Thread loader = new Thread(() -> {
+            try {
+                Map<String, Record> live = load();
+                for (Map.Entry<String, Record> entry : live.entrySet()) {
+                    cache.put(entry.getKey(), entry.getValue().coordinates);
+                }
+                loaded.complete(live.size());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Не удалось загрузить кэш геокодирования " + file + ": " + e.getMessage());
+                loaded.complete(0);
+            }
+        }, "geocoding-store-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return loaded;
+    }
+
+    // Завершается после загрузки журнала (в том числе неудачной)
+    public CompletableFuture<Integer> whenLoaded() {
+        return loaded;
+    }
+
+    // Последняя живая запись по ключу из загруженного журнала и дописанных после загрузки; null, если нет или устарела
+    public Coordinates find(String key) {
+        Record record = index.get(key);
+        if (record == null) {
+            return null;
+        }
+        if (clock.getAsLong() - record.writtenAt >= ttlMillis) {
+            index.remove(key, record);
+            return null;
+        }
+        return record.coordinates;
+    }
+
+    public synchronized void append(String key, Coordinates coordinates) throws IOException {
+        Record entry = new Record(clock.getAsLong(), coordinates);
+        ByteBuffer record = encode(key, entry);
+        FileChannel out = openForAppend();
+        while (record.hasRemaining()) {
+            out.write(record);
+        }
+        index.put(key, entry);
+        appended++;
+    }
+
+    synchronized Map<String, Record> load() throws IOException {
+        Map<String, Record> live = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return live;
+        }
+
+        int records = 0;
+        long validBytes = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            long now = clock.getAsLong();
+
+            while (data.remaining() >= HEADER_BYTES) {
+                int start = data.position();
+                int length = data.getInt();
+                int checksum = data.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES || length > data.remaining()) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                data.get(payload);
+                if (crc(payload) != checksum) {
+                    data.position(start);
+                    break;
+                }
+
+                records++;
+                validBytes = data.position();
+                ByteBuffer fields = ByteBuffer.wrap(payload);
+                long writtenAt = fields.getLong();
+                double lat = fields.getDouble();
+                double lon = fields.getDouble();
+                String key = readString(fields);
+                String displayName = readString(fields);
+
+                live.remove(key);
+                if (now - writtenAt < ttlMillis) {
+                    live.put(key, new Record(writtenAt, new Coordinates(lat, lon, displayName)));
+                }
+            }
+        }
+
+        long size = Files.size(file);
+        if (validBytes < size) {
+            System.err.printf("Кэш геокодирования %s: отброшен повреждённый хвост %d байт%n", file, size - validBytes);
+        }
+        if (validBytes < size || records - live.size() >= Math.max(MIN_DEAD_FOR_COMPACTION, live.size())) {
+            rewrite(live);
+        }
+        index.clear();
+        index.putAll(live);
+        return live;
+    }
+
+    // Переписывает журнал только живыми записями: во временный файл и атомарное переименование
+    private void rewrite(Map<String, Record> live) throws IOException {
+        closeChannel();
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, Record> entry : live.entrySet()) {
+                ByteBuffer record = encode(entry.getKey(), entry.getValue());
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        compactions++;
+    }
+
+    public synchronized void compact() throws IOException {
+        rewrite(load());
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        if (channel == null) {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+        closeChannel();
+    }
+
+    private static ByteBuffer encode(String key, Record record) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = record.coordinates.getDisplayName().getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF || nameBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Слишком длинная запись геокодирования: " + key);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(8 + 8 + 8 + 2 + keyBytes.length + 2 + nameBytes.length);
+        payload.putLong(record.writtenAt)
+                .putDouble(record.coordinates.getLat())
+                .putDouble(record.coordinates.getLon())
+                .putShort((short) keyBytes.length).put(keyBytes)
+                .putShort((short) nameBytes.length).put(nameBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.capacity());
+        buffer.putInt(payload.capacity()).putInt(crc(payload.array())).put(payload.array());
+        return buffer.flip();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    public synchronized long getAppended() { return appended; }
+    public int size() { return index.size(); }
+    public synchronized long getCompactions() { return compactions; }
+    public Path getFile() { return file; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("GeocodingStore{file=%s, loaded=%s, appended=%d, compactions=%d}",
+                file, loaded.isDone() ? loaded.join() : "...", appended, compactions);
+    }
+
+    static final class Record {
+        final long writtenAt;
+        final Coordinates coordinates;
+
+        Record(long writtenAt, Coordinates coordinates) {
+            this.writtenAt = writtenAt;
+            this.coordinates = coordinates;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.utils.services;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Общий HTTP-клиент для всех внешних API: один пул соединений, один диспетчер и общий DNS-кэш,
+// чтобы консольный и Telegram-бот переиспользовали одни и те же сокеты
+public final class HttpClients {
+    public static final int MAX_REQUESTS = 128;
+    public static final int MAX_REQUESTS_PER_HOST = 32;
+    public static final int MAX_IDLE_CONNECTIONS = 32;
+    public static final Duration KEEP_ALIVE = Duration.ofMinutes(5);
+    public static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    public static final Duration READ_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration CALL_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration DNS_TTL = Duration.ofMinutes(5);
+
+    public static final List<String> UPSTREAM_HOSTS = List.of(
+            "https://api.open-meteo.com/",
+            "https://nominatim.openstreetmap.org/"
+    );
+
+    private static volatile OkHttpClient shared;
+
+    private HttpClients() {
+    }
+
+    public static OkHttpClient shared() {
+        if (shared == null) {
+            synchronized (HttpClients.class) {
+                if (shared == null) {
+                    shared = create(MAX_REQUESTS, MAX_REQUESTS_PER_HOST, MAX_IDLE_CONNECTIONS,
+                            CONNECT_TIMEOUT, READ_TIMEOUT, CALL_TIMEOUT);
+                }
+            }
+        }
+        return shared;
+    }
+
+    public static OkHttpClient create(int maxRequests, int maxRequestsPerHost, int maxIdleConnections,
+                                      Duration connectTimeout, Duration readTimeout, Duration callTimeout) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, KEEP_ALIVE.toMillis(), TimeUnit.MILLISECONDS))
+                .dns(new CachingDns(DNS_TTL))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .callTimeout(callTimeout)
+                .build();
+    }
+
+    // Открывает соединения (DNS + TCP + TLS) заранее, чтобы первый пользователь не платил за рукопожатие
+    public static void prewarm(OkHttpClient client, List<String> urls) {
+        for (String url : urls) {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .head()
+                    .addHeader("User-Agent", "WeatherBot/1.0")
+                    .build();
+
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    System.err.println("Не удалось прогреть соединение с " + url + ": " + e.getMessage());
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                }
+            });
+        }
+    }
+}
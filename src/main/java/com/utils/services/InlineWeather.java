@@ -0,0 +1,132 @@
+package com.utils.services;
+
+import com.utils.models.Coordinates;
+import com.utils.models.DailyColumns;
+import com.utils.models.OpenMeteoResponse;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.inputmessagecontent.InputTextMessageContent;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResult;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Inline-режим "@bot <город>": города ищутся по префиксу в индексе справочника, погода берётся
+// из кэша прогнозов. Город без прогноза в кэше запрашивается один раз (single-flight в WeatherAPI),
+// следующие нажатия клавиш его уже не трогают. Готовые ответы кэшируются по нормализованному
+// запросу, а cache_time просит Telegram переиспользовать их без обращения к боту.
+public class InlineWeather {
+    static final int MAX_RESULTS = 5;
+    static final int CACHE_TIME_SECONDS = 300;
+    // Неполный ответ (прогноз не успел загрузиться) Telegram должен спросить снова почти сразу
+    static final int PARTIAL_CACHE_TIME_SECONDS = 5;
+    private static final long FETCH_TIMEOUT_MILLIS = 1_500;
+
+    private final WeatherAPI weatherAPI;
+    private final WeatherFormatter formatter;
+    private final TtlCache<String, List<InlineQueryResult>> answers;
+
+    private record Place(String label, Coordinates coordinates) {
+    }
+
+    public InlineWeather(WeatherAPI weatherAPI) {
+        this(weatherAPI, new TtlCache<>(1_000, Duration.ofSeconds(CACHE_TIME_SECONDS)));
+    }
+
+    public InlineWeather(WeatherAPI weatherAPI, TtlCache<String, List<InlineQueryResult>> answers) {
+        this.weatherAPI = weatherAPI;
+        this.formatter = new WeatherFormatter(weatherAPI);
+        this.answers = answers;
+    }
+
+    public CompletableFuture<AnswerInlineQuery> answer(InlineQuery query) {
+        String key = Geocoding.normalize(query.getQuery());
+        List<InlineQueryResult> cached = answers.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(answerOf(query.getId(), cached, CACHE_TIME_SECONDS));
+        }
+
+        List<Place> places = findPlaces(key);
+        List<CompletableFuture<InlineQueryResult>> cards = new ArrayList<>(places.size());
+        for (Place place : places) {
+            Coordinates coordinates = place.coordinates();
+            int id = cards.size();
+            cards.add(weatherAPI.getWeatherAsync(coordinates.getLat(), coordinates.getLon(), 1)
+                    .thenApply(response -> card(id, place, response))
+                    .exceptionally(e -> null)
+                    .completeOnTimeout(null, FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+
+        return CompletableFuture.allOf(cards.toArray(CompletableFuture<?>[]::new)).thenApply(done -> {
+            List<InlineQueryResult> results = new ArrayList<>(cards.size());
+            for (CompletableFuture<InlineQueryResult> card : cards) {
+                InlineQueryResult result = card.join();
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+
+            boolean complete = results.size() == places.size();
+            if (complete) {
+                answers.put(key, results);
+            }
+            return answerOf(query.getId(), results, complete ? CACHE_TIME_SECONDS : PARTIAL_CACHE_TIME_SECONDS);
+        });
+    }
+
+    // Сначала продолжения введённого префикса, при их отсутствии - варианты с опечаткой
+    private List<Place> findPlaces(String key) {
+        Geocoding geocoding = weatherAPI.getGeocoding();
+        CityNameIndex index = geocoding.getCityIndex();
+        Gazetteer gazetteer = geocoding.getGazetteer();
+        if (index == null || gazetteer == null) {
+            return List.of();
+        }
+
+        List<CityNameIndex.Match> matches = index.startingWith(key, MAX_RESULTS);
+        if (matches.isEmpty()) {
+            matches = index.suggest(key, MAX_RESULTS);
+        }
+
+        List<Place> places = new ArrayList<>(matches.size());
+        for (CityNameIndex.Match match : matches) {
+            Coordinates coordinates = gazetteer.find(match.getName());
+            if (coordinates != null) {
+                places.add(new Place(match.getLabel(), coordinates));
+            }
+        }
+        return places;
+    }
+
+    private InlineQueryResult card(int id, Place place, OpenMeteoResponse response) {
+        DailyColumns daily = response.getDaily().getColumns();
+        String description = String.format(Locale.ROOT, "%.0f°C...%.0f°C, %s",
+                daily.getTemperatureMin(0), daily.getTemperatureMax(0),
+                weatherAPI.getWeatherCondition(daily.getWeatherCode(0)));
+
+        InputTextMessageContent content = new InputTextMessageContent();
+        content.setMessageText(formatter.formatWeatherResponse(response, place.coordinates().getDisplayName(), 1));
+
+        InlineQueryResultArticle article = new InlineQueryResultArticle();
+        article.setId(Integer.toString(id));
+        article.setTitle(place.label());
+        article.setDescription(description);
+        article.setInputMessageContent(content);
+        return article;
+    }
+
+    private static AnswerInlineQuery answerOf(String queryId, List<InlineQueryResult> results, int cacheTime) {
+        AnswerInlineQuery answer = new AnswerInlineQuery();
+        answer.setInlineQueryId(queryId);
+        answer.setResults(results);
+        answer.setCacheTime(cacheTime);
+        // Погода для города одинакова для всех - Telegram может отдавать ответ любому пользователю
+        answer.setIsPersonal(false);
+        return answer;
+    }
+}
@@ -10,6 +10,24 @@ import java.util.List;
 
 public class KeyboardFactory {
 
+    // Постоянные клавиатуры бота строятся один раз и переиспользуются во всех ответах;
+    // create* по-прежнему возвращают новые изменяемые экземпляры
+    private static final PrebuiltKeyboard MAIN_WEATHER = new PrebuiltKeyboard(createMainWeatherKeyboard());
+    private static final PrebuiltKeyboard CITIES = new PrebuiltKeyboard(createCitiesKeyboard());
+    private static final PrebuiltKeyboard CANCEL = new PrebuiltKeyboard(createCancelKeyboard());
+
+    public static ReplyKeyboardMarkup mainWeatherKeyboard() {
+        return MAIN_WEATHER;
+    }
+
+    public static ReplyKeyboardMarkup citiesKeyboard() {
+        return CITIES;
+    }
+
+    public static ReplyKeyboardMarkup cancelKeyboard() {
+        return CANCEL;
+    }
+
     public static ReplyKeyboardMarkup createMainWeatherKeyboard() {
         ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
         keyboardMarkup.setResizeKeyboard(true);
@@ -88,6 +106,27 @@ public class KeyboardFactory {
         return keyboardMarkup;
     }
 
+    // Клавиатура "Возможно, вы имели в виду": по городу в ряд и отмена
+    public static ReplyKeyboardMarkup createSuggestionsKeyboard(List<String> cities) {
+        ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
+        keyboardMarkup.setResizeKeyboard(true);
+        keyboardMarkup.setOneTimeKeyboard(true);
+
+        List<KeyboardRow> keyboard = new ArrayList<>();
+        for (String city : cities) {
+            KeyboardRow row = new KeyboardRow();
+            row.add(city);
+            keyboard.add(row);
+        }
+
+        KeyboardRow cancelRow = new KeyboardRow();
+        cancelRow.add("↩️ Отмена");
+        keyboard.add(cancelRow);
+
+        keyboardMarkup.setKeyboard(keyboard);
+        return keyboardMarkup;
+    }
+
     public static ReplyKeyboardMarkup createCancelKeyboard() {
         ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
         keyboardMarkup.setResizeKeyboard(true);
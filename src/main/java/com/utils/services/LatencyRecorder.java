@@ -0,0 +1,59 @@
+package com.utils.services;
+
+import java.util.Arrays;
+
+// Задержки событий: перцентили считаются по скользящему окну последних замеров (1024 по умолчанию),
+// счётчик и максимум - за всё время работы
+public class LatencyRecorder {
+    private static final int DEFAULT_WINDOW = 1024;
+
+    private final long[] window;
+    private int next;
+    private int filled;
+    private long count;
+    private long maxNanos;
+
+    public LatencyRecorder() {
+        this(DEFAULT_WINDOW);
+    }
+
+    public LatencyRecorder(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Размер окна должен быть положительным: " + windowSize);
+        }
+        this.window = new long[windowSize];
+    }
+
+    public synchronized void record(long nanos) {
+        window[next] = nanos;
+        next = (next + 1) % window.length;
+        filled = Math.min(filled + 1, window.length);
+        count++;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    // percentile от 0 до 100; 0, пока замеров не было
+    public synchronized double getPercentileMillis(double percentile) {
+        if (filled == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(window, filled);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * filled) - 1;
+        return sorted[Math.max(0, Math.min(index, filled - 1))] / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("n=%d, p50=%.0f мс, p95=%.0f мс, p99=%.0f мс, max=%.0f мс",
+                count, getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99), getMaxMillis());
+    }
+}
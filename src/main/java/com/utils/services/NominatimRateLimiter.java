@@ -0,0 +1,157 @@
+package com.utils.services;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket перед Nominatim (политика использования - не больше 1 запроса в секунду).
+// Ожидающие стоят в ограниченной очереди с приоритетом: ввод пользователя обслуживается раньше фоновой работы.
+public class NominatimRateLimiter {
+    private static volatile NominatimRateLimiter shared;
+
+    private final double permitsPerSecond;
+    private final double burst;
+    private final int maxQueue;
+    private final PriorityBlockingQueue<Waiter> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public enum Priority {
+        INTERACTIVE,   // Пользователь ждёт ответа ("📍 Сменить город")
+        BACKGROUND     // Прогрев кэшей и прочая фоновая работа
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        final Priority priority;
+        final long sequence;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+        Waiter(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public NominatimRateLimiter(double permitsPerSecond, int burst, int maxQueue) {
+        if (permitsPerSecond <= 0 || burst <= 0 || maxQueue <= 0) {
+            throw new IllegalArgumentException("Параметры ограничителя должны быть положительными");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.maxQueue = maxQueue;
+        this.tokens = burst;
+
+        Thread dispatcher = new Thread(this::dispatch, "nominatim-rate-limiter");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // Лимит Nominatim считается на IP, поэтому по умолчанию все экземпляры Geocoding делят один ограничитель
+    public static NominatimRateLimiter shared() {
+        if (shared == null) {
+            synchronized (NominatimRateLimiter.class) {
+                if (shared == null) {
+                    shared = new NominatimRateLimiter(1.0, 1, 100);
+                }
+            }
+        }
+        return shared;
+    }
+
+    // Future завершается, когда можно отправлять запрос; при переполненной очереди - сразу с ошибкой
+    public CompletableFuture<Void> acquire(Priority priority) {
+        Waiter waiter = new Waiter(priority, sequence.incrementAndGet());
+
+        synchronized (queue) {
+            if (queue.size() >= maxQueue) {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(
+                        new IOException("Очередь запросов к Nominatim переполнена"));
+            }
+            queue.add(waiter);
+            queue.notifyAll();
+        }
+
+        return waiter.permit;
+    }
+
+    private void dispatch() {
+        while (true) {
+            Waiter waiter;
+            try {
+                awaitWaiter();
+                takeToken();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Ожидающий выбирается после получения токена, чтобы разрешение досталось самому приоритетному
+            synchronized (queue) {
+                waiter = queue.poll();
+            }
+
+            long waited = System.nanoTime() - waiter.enqueuedAt;
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            granted.incrementAndGet();
+
+            waiter.permit.complete(null);
+        }
+    }
+
+    // Ожидающий остаётся в очереди до выдачи разрешения и учитывается в её лимите
+    private void awaitWaiter() throws InterruptedException {
+        synchronized (queue) {
+            while (queue.isEmpty()) {
+                queue.wait();
+            }
+        }
+    }
+
+    // Токен берётся только при наличии ожидающего: взятый заранее после простоя дал бы второй запрос без паузы
+    private void takeToken() throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * permitsPerSecond);
+            lastRefillNanos = now;
+
+            if (tokens >= 1) {
+                tokens -= 1;
+                return;
+            }
+
+            long sleepNanos = (long) ((1 - tokens) / permitsPerSecond * 1e9);
+            Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+        }
+    }
+
+    public int getQueueDepth() { return queue.size(); }
+    public long getGranted() { return granted.get(); }
+    public long getRejected() { return rejected.get(); }
+    public long getMaxWaitMillis() { return maxWaitNanos.get() / 1_000_000; }
+
+    public double getAverageWaitMillis() {
+        long count = granted.get();
+        return count == 0 ? 0.0 : totalWaitNanos.get() / 1e6 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NominatimRateLimiter{queue=%d/%d, granted=%d, rejected=%d, avgWait=%.1fms, maxWait=%dms}",
+                queue.size(), maxQueue, granted.get(), rejected.get(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
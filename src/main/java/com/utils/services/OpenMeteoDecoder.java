@@ -0,0 +1,163 @@
+package com.utils.services;
+
+import com.utils.models.Daily;
+import com.utils.models.DailyColumns;
+import com.utils.models.OpenMeteoResponse;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import okio.BufferedSource;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Потоковый разбор ответа Open-Meteo: тело не собирается в строку, колонки читаются сразу в DailyColumns,
+// а поля, которые бот не показывает (hourly, units, elevation...), пропускаются без разбора
+public final class OpenMeteoDecoder {
+
+    private OpenMeteoDecoder() {
+    }
+
+    public static OpenMeteoResponse decode(BufferedSource source) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8));
+        return readResponse(reader);
+    }
+
+    // Ответ на запрос с несколькими координатами - массив объектов в порядке координат
+    public static List<OpenMeteoResponse> decodeAll(BufferedSource source) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8));
+        List<OpenMeteoResponse> responses = new ArrayList<>();
+
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                responses.add(readResponse(reader));
+            }
+            reader.endArray();
+        } else {
+            responses.add(readResponse(reader));
+        }
+
+        return responses;
+    }
+
+    static OpenMeteoResponse readResponse(JsonReader reader) throws IOException {
+        OpenMeteoResponse response = new OpenMeteoResponse();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("daily")) {
+                response.setDaily(readDaily(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return response;
+    }
+
+    private static Daily readDaily(JsonReader reader) throws IOException {
+        int[] epochDays = null;
+        float[] temperatureMax = null;
+        float[] temperatureMin = null;
+        byte[] weatherCodes = null;
+        float[] windspeedMax = null;
+        float[] precipitationProbabilityMax = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "time":
+                    epochDays = readEpochDays(reader);
+                    break;
+                case "temperature_2m_max":
+                    temperatureMax = readFloats(reader);
+                    break;
+                case "temperature_2m_min":
+                    temperatureMin = readFloats(reader);
+                    break;
+                case "weathercode":
+                    weatherCodes = readCodes(reader);
+                    break;
+                case "windspeed_10m_max":
+                    windspeedMax = readFloats(reader);
+                    break;
+                case "precipitation_probability_max":
+                    precipitationProbabilityMax = readFloats(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Daily(new DailyColumns(epochDays, temperatureMax, temperatureMin, weatherCodes,
+                windspeedMax, precipitationProbabilityMax));
+    }
+
+    // Даты приходят в формате ISO "2023-10-01" и сразу переводятся в номер дня от эпохи
+    private static int[] readEpochDays(JsonReader reader) throws IOException {
+        int[] values = new int[8];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = (int) LocalDate.parse(reader.nextString()).toEpochDay();
+        }
+        reader.endArray();
+
+        return Arrays.copyOf(values, size);
+    }
+
+    // Пропуски в данных (null) становятся NaN
+    private static float[] readFloats(JsonReader reader) throws IOException {
+        float[] values = new float[8];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                values[size++] = Float.NaN;
+            } else {
+                values[size++] = (float) reader.nextDouble();
+            }
+        }
+        reader.endArray();
+
+        return Arrays.copyOf(values, size);
+    }
+
+    // Отсутствующий код погоды становится -1 и отображается как "Неизвестно"
+    private static byte[] readCodes(JsonReader reader) throws IOException {
+        byte[] values = new byte[8];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                values[size++] = -1;
+            } else {
+                values[size++] = (byte) reader.nextInt();
+            }
+        }
+        reader.endArray();
+
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,421 @@
+package com.utils.services;
+
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+// Очередь исходящих сообщений с учётом лимитов Telegram: общий token bucket (~30 сообщений в секунду)
+// и интервал между сообщениями в один чат (~1 в секунду). Чат, у которого подошло время, берётся из
+// DelayQueue; накопившиеся за ожидание сообщения в этот чат склеиваются в одно. Ответ 429 откладывает
+// чат на retry_after, 403 (бот заблокирован) - сбрасывает очередь чата и сообщает об этом владельцу.
+// Запросы, чей ответ нужен вызывающему (заглушка, правка сообщения), идут через те же лимиты, но не склеиваются.
+public class OutboundScheduler implements AutoCloseable {
+    public static final int MAX_TEXT_LENGTH = 4096;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @FunctionalInterface
+    public interface Sender {
+        void send(SendMessage message) throws TelegramApiException;
+    }
+
+    @FunctionalInterface
+    public interface Request<T> {
+        T execute() throws TelegramApiException;
+    }
+
+    private final Sender sender;
+    private final LongConsumer onBlocked;
+    private final double permitsPerSecond;
+    private final double burst;
+    private final long perChatIntervalNanos;
+
+    private final ConcurrentHashMap<Long, ChatQueue> chats = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatQueue> ready = new DelayQueue<>();
+    private final Set<Long> blocked = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread dispatcher;
+
+    // Состояние общего bucket меняет только поток dispatcher
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private volatile long pausedUntilNanos = System.nanoTime();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong blockedChats = new AtomicLong();
+
+    // Сообщение (возможно, склеенное из нескольких) и ожидающие его отправки
+    // либо запрос с ответом (message == null)
+    private static class Outgoing {
+        final long chatId;
+        final SendMessage message;
+        final List<CompletableFuture<Void>> done;
+        int attempts;
+
+        Outgoing(long chatId, SendMessage message, List<CompletableFuture<Void>> done) {
+            this.chatId = chatId;
+            this.message = message;
+            this.done = done;
+        }
+
+        void send(Sender sender) throws TelegramApiException {
+            sender.send(message);
+        }
+
+        void complete() {
+            done.forEach(future -> future.complete(null));
+        }
+
+        void fail(Throwable cause) {
+            done.forEach(future -> future.completeExceptionally(cause));
+        }
+    }
+
+    private static final class Call<T> extends Outgoing {
+        final Request<T> request;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        T response;
+
+        Call(long chatId, Request<T> request) {
+            super(chatId, null, List.of());
+            this.request = request;
+        }
+
+        @Override
+        void send(Sender sender) throws TelegramApiException {
+            response = request.execute();
+        }
+
+        @Override
+        void complete() {
+            result.complete(response);
+        }
+
+        @Override
+        void fail(Throwable cause) {
+            result.completeExceptionally(cause);
+        }
+    }
+
+    // Очередь одного чата. Поля меняются только внутри chats.compute* по ключу чата;
+    // пока scheduled, очередь лежит в ready или её сообщение отправляется
+    private static final class ChatQueue implements Delayed {
+        final long chatId;
+        final ArrayDeque<Outgoing> pending = new ArrayDeque<>();
+        boolean scheduled;
+        volatile long sendAtNanos;
+
+        ChatQueue(long chatId) {
+            this.chatId = chatId;
+            this.sendAtNanos = System.nanoTime();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(sendAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(sendAtNanos, ((ChatQueue) other).sendAtNanos);
+        }
+    }
+
+    public OutboundScheduler(Sender sender, LongConsumer onBlocked, double permitsPerSecond, int burst,
+                             long perChatIntervalMillis) {
+        if (permitsPerSecond <= 0 || burst <= 0 || perChatIntervalMillis < 0) {
+            throw new IllegalArgumentException("Параметры очереди отправки должны быть положительными");
+        }
+        this.sender = sender;
+        this.onBlocked = onBlocked;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.perChatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(perChatIntervalMillis);
+
+        dispatcher = new Thread(this::dispatch, "telegram-outbound");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // Лимиты Bot API: 30 сообщений в секунду на бота, 1 сообщение в секунду в один чат
+    public static OutboundScheduler withTelegramLimits(Sender sender, LongConsumer onBlocked) {
+        return new OutboundScheduler(sender, onBlocked, 30.0, 30, 1_000);
+    }
+
+    // Future завершается после доставки сообщения (или склеенного с ним) либо с ошибкой
+    public CompletableFuture<Void> submit(long chatId, SendMessage message) {
+        submitted.incrementAndGet();
+        if (blocked.contains(chatId)) {
+            failed.incrementAndGet();
+            return CompletableFuture.failedFuture(new TelegramApiException("Чат " + chatId + " заблокировал бота"));
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+        waiters.add(done);
+        enqueue(new Outgoing(chatId, message, waiters));
+        return done;
+    }
+
+    // Запрос, которому нужен ответ Telegram (например, message_id заглушки): ждёт своей очереди в чате и
+    // общего лимита, на 429 повторяется через retry_after, на 403 чат блокируется. Future - ответ или ошибка
+    public <T> CompletableFuture<T> submit(long chatId, Request<T> request) {
+        submitted.incrementAndGet();
+        if (blocked.contains(chatId)) {
+            failed.incrementAndGet();
+            return CompletableFuture.failedFuture(new TelegramApiException("Чат " + chatId + " заблокировал бота"));
+        }
+
+        Call<T> call = new Call<>(chatId, request);
+        enqueue(call);
+        return call.result;
+    }
+
+    private void enqueue(Outgoing outgoing) {
+        chats.compute(outgoing.chatId, (id, queue) -> {
+            ChatQueue target = queue != null ? queue : new ChatQueue(id);
+            target.pending.add(outgoing);
+            if (!target.scheduled) {
+                target.scheduled = true;
+                ready.add(target);
+            }
+            return target;
+        });
+    }
+
+    // Пользователь снова пишет боту - значит, разблокировал его
+    public void unblock(long chatId) {
+        blocked.remove(chatId);
+    }
+
+    public boolean isBlocked(long chatId) {
+        return blocked.contains(chatId);
+    }
+
+    private void dispatch() {
+        while (true) {
+            ChatQueue queue;
+            try {
+                queue = ready.take();
+                // Пустая очередь дождалась конца интервала чата - больше она не нужна
+                if (removeIfIdle(queue)) {
+                    continue;
+                }
+                takeToken();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            Outgoing[] next = new Outgoing[1];
+            chats.computeIfPresent(queue.chatId, (id, current) -> {
+                next[0] = drain(current.pending);
+                return current;
+            });
+            senders.execute(() -> send(queue, next[0]));
+        }
+    }
+
+    private boolean removeIfIdle(ChatQueue queue) {
+        boolean[] removed = new boolean[1];
+        chats.computeIfPresent(queue.chatId, (id, current) -> {
+            removed[0] = current.pending.isEmpty();
+            return removed[0] ? null : current;
+        });
+        return removed[0];
+    }
+
+    private void takeToken() throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            long paused = pausedUntilNanos - now;
+            if (paused > 0) {
+                TimeUnit.NANOSECONDS.sleep(paused);
+                continue;
+            }
+
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * permitsPerSecond);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return;
+            }
+
+            TimeUnit.NANOSECONDS.sleep((long) ((1 - tokens) / permitsPerSecond * 1e9));
+        }
+    }
+
+    // Склеивает подряд идущие текстовые сообщения: итоговая клавиатура - последняя заданная,
+    // как и осталась бы у пользователя после отдельных сообщений
+    private Outgoing drain(ArrayDeque<Outgoing> pending) {
+        Outgoing first = pending.poll();
+        if (pending.isEmpty() || first.attempts > 0 || !mergeable(first.message)) {
+            return first;
+        }
+
+        StringBuilder text = new StringBuilder(first.message.getText());
+        ReplyKeyboard markup = first.message.getReplyMarkup();
+        List<CompletableFuture<Void>> done = new ArrayList<>(first.done);
+        while (!pending.isEmpty()) {
+            SendMessage candidate = pending.peek().message;
+            if (!mergeable(candidate)
+                    || !Objects.equals(candidate.getParseMode(), first.message.getParseMode())
+                    || text.length() + 2 + candidate.getText().length() > MAX_TEXT_LENGTH) {
+                break;
+            }
+            text.append("\n\n").append(candidate.getText());
+            if (candidate.getReplyMarkup() != null) {
+                markup = candidate.getReplyMarkup();
+            }
+            done.addAll(pending.poll().done);
+            merged.incrementAndGet();
+        }
+        if (done.size() == first.done.size()) {
+            return first;
+        }
+
+        SendMessage combined = new SendMessage();
+        combined.setChatId(first.message.getChatId());
+        combined.setText(text.toString());
+        combined.setParseMode(first.message.getParseMode());
+        combined.setReplyMarkup(markup);
+        return new Outgoing(first.chatId, combined, done);
+    }
+
+    // Inline-клавиатура привязана к своему сообщению, такие не склеиваем
+    private static boolean mergeable(SendMessage message) {
+        return message != null
+                && message.getText() != null
+                && message.getReplyToMessageId() == null
+                && !(message.getReplyMarkup() instanceof InlineKeyboardMarkup);
+    }
+
+    private void send(ChatQueue queue, Outgoing outgoing) {
+        long delay = perChatIntervalNanos;
+        try {
+            outgoing.attempts++;
+            outgoing.send(sender);
+            sent.incrementAndGet();
+            outgoing.complete();
+        } catch (TelegramApiRequestException e) {
+            Integer code = e.getErrorCode();
+            if (code != null && code == 429) {
+                throttled.incrementAndGet();
+                Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+                delay = TimeUnit.SECONDS.toNanos(retryAfter != null ? retryAfter : 1);
+                // Превышение могло быть общим - притормаживаем всю отправку на тот же срок
+                pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + delay);
+                outgoing.attempts--;
+                reschedule(queue, delay, outgoing);
+                return;
+            }
+            if (code != null && code == 403) {
+                block(queue.chatId, outgoing, e);
+                return;
+            }
+            if (code != null && code >= 500 && outgoing.attempts < MAX_ATTEMPTS) {
+                reschedule(queue, RETRY_BACKOFF_NANOS * outgoing.attempts, outgoing);
+                return;
+            }
+            fail(outgoing, e);
+        } catch (TelegramApiException e) {
+            // Сетевая ошибка - пробуем ещё раз с паузой
+            if (outgoing.attempts < MAX_ATTEMPTS) {
+                reschedule(queue, RETRY_BACKOFF_NANOS * outgoing.attempts, outgoing);
+                return;
+            }
+            fail(outgoing, e);
+        } catch (RuntimeException e) {
+            fail(outgoing, e);
+        }
+        reschedule(queue, delay, null);
+    }
+
+    // retry - сообщение, которое нужно отправить первым при следующей попытке
+    private void reschedule(ChatQueue queue, long delayNanos, Outgoing retry) {
+        chats.compute(queue.chatId, (id, current) -> {
+            ChatQueue target = current != null ? current : queue;
+            if (retry != null) {
+                target.pending.addFirst(retry);
+            }
+            target.sendAtNanos = System.nanoTime() + delayNanos;
+            target.scheduled = true;
+            ready.add(target);
+            return target;
+        });
+    }
+
+    private void block(long chatId, Outgoing outgoing, TelegramApiException cause) {
+        blocked.add(chatId);
+        blockedChats.incrementAndGet();
+        ChatQueue removed = chats.remove(chatId);
+        // Владелец узнаёт о блокировке раньше, чем ожидающие отправки получат ошибку
+        if (onBlocked != null) {
+            onBlocked.accept(chatId);
+        }
+
+        fail(outgoing, cause);
+        if (removed != null) {
+            Outgoing rest;
+            while ((rest = removed.pending.poll()) != null) {
+                fail(rest, cause);
+            }
+        }
+    }
+
+    private void fail(Outgoing outgoing, Throwable cause) {
+        failed.incrementAndGet();
+        System.err.println("Не удалось отправить сообщение в чат " + outgoing.chatId + ": " + cause.getMessage());
+        outgoing.fail(cause);
+    }
+
+    public int getQueuedChats() { return chats.size(); }
+    public long getSubmitted() { return submitted.get(); }
+    public long getSent() { return sent.get(); }
+    public long getMerged() { return merged.get(); }
+    public long getThrottled() { return throttled.get(); }
+    public long getFailed() { return failed.get(); }
+    public long getBlockedChats() { return blockedChats.get(); }
+
+    // Останавливает отправку; уже начатые запросы дожидаются завершения
+    @Override
+    public void close() {
+        dispatcher.interrupt();
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(10, TimeUnit.SECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OutboundScheduler{chats=%d, submitted=%d, sent=%d, merged=%d, throttled=%d, failed=%d, blocked=%d}",
+                chats.size(), submitted.get(), sent.get(), merged.get(), throttled.get(), failed.get(), blockedChats.get());
+    }
+}
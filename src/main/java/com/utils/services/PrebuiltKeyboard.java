@@ -0,0 +1,113 @@
+package com.utils.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiValidationException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Клавиатура, общая для всех сообщений и потоков: строится и проверяется один раз, JSON для Bot API
+// готов заранее и при отправке пишется в запрос как есть. Изменить её нельзя - сеттеры бросают
+// исключение, а getKeyboard отдаёт копию рядов.
+@JsonSerialize(using = PrebuiltKeyboard.RawJsonSerializer.class)
+public final class PrebuiltKeyboard extends ReplyKeyboardMarkup {
+    private static final long serialVersionUID = 1L;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String json;
+
+    public PrebuiltKeyboard(ReplyKeyboardMarkup source) {
+        super(copyRows(source.getKeyboard()), source.getResizeKeyboard(), source.getOneTimeKeyboard(),
+                source.getSelective(), source.getInputFieldPlaceholder(), source.getIsPersistent());
+        try {
+            source.validate();
+            this.json = MAPPER.writeValueAsString(source);
+        } catch (TelegramApiValidationException | JsonProcessingException e) {
+            throw new IllegalArgumentException("Некорректная клавиатура: " + e.getMessage(), e);
+        }
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public List<KeyboardRow> getKeyboard() {
+        return copyRows(super.getKeyboard());
+    }
+
+    // Проверена при создании
+    @Override
+    public void validate() {
+    }
+
+    @Override
+    public void setKeyboard(List<KeyboardRow> keyboard) {
+        throw immutable();
+    }
+
+    @Override
+    public void setResizeKeyboard(Boolean resizeKeyboard) {
+        throw immutable();
+    }
+
+    @Override
+    public void setOneTimeKeyboard(Boolean oneTimeKeyboard) {
+        throw immutable();
+    }
+
+    @Override
+    public void setSelective(Boolean selective) {
+        throw immutable();
+    }
+
+    @Override
+    public void setInputFieldPlaceholder(String inputFieldPlaceholder) {
+        throw immutable();
+    }
+
+    @Override
+    public void setIsPersistent(Boolean isPersistent) {
+        throw immutable();
+    }
+
+    private static UnsupportedOperationException immutable() {
+        return new UnsupportedOperationException("Общая клавиатура не изменяется, создайте новую через KeyboardFactory.create*");
+    }
+
+    private static List<KeyboardRow> copyRows(List<KeyboardRow> rows) {
+        List<KeyboardRow> copy = new ArrayList<>(rows.size());
+        for (KeyboardRow row : rows) {
+            KeyboardRow rowCopy = new KeyboardRow(row.size());
+            for (KeyboardButton button : row) {
+                rowCopy.add(new KeyboardButton(button.getText(), button.getRequestContact(), button.getRequestLocation(),
+                        button.getRequestPoll(), button.getWebApp(), button.getRequestUser(), button.getRequestChat()));
+            }
+            copy.add(rowCopy);
+        }
+        return copy;
+    }
+
+    static final class RawJsonSerializer extends StdSerializer<PrebuiltKeyboard> {
+        private static final long serialVersionUID = 1L;
+
+        RawJsonSerializer() {
+            super(PrebuiltKeyboard.class);
+        }
+
+        @Override
+        public void serialize(PrebuiltKeyboard keyboard, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeRawValue(keyboard.json);
+        }
+    }
+}
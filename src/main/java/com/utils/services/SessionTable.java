@@ -0,0 +1,325 @@
+package com.utils.services;
+
+import com.utils.models.UserSession;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+// Таблица сессий с ключом long chatId без упаковки в Long: открытая адресация с линейным пробированием,
+// ключи в long[], сессии (неизменяемые) в параллельном массиве. Таблица поделена на сегменты со своей
+// блокировкой, update заменяет запись целиком под блокировкой сегмента - изменение атомарно.
+// Чтение оптимистичное (StampedLock): без записи в общую память, повтор под блокировкой только при гонке.
+// Для вытеснения простаивающих сессий рядом хранится время последнего обращения в секундах (int[]).
+public class SessionTable {
+    private static final int SEGMENTS = 64;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongSupplier clock;
+    private final long startMillis;
+
+    public SessionTable() {
+        this(1024);
+    }
+
+    public SessionTable(int expectedSessions) {
+        this(expectedSessions, System::currentTimeMillis);
+    }
+
+    public SessionTable(int expectedSessions, LongSupplier clock) {
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+        int perSegment = Math.max(16, expectedSessions / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    public UserSession get(long chatId) {
+        long hash = mix(chatId);
+        return segmentFor(hash).get(chatId, hash);
+    }
+
+    public void put(UserSession session) {
+        long hash = mix(session.getChatId());
+        segmentFor(hash).update(session.getChatId(), hash, current -> session, now());
+    }
+
+    // Атомарно заменяет сессию: функция получает текущую (или null), возврат null удаляет запись
+    public UserSession update(long chatId, UnaryOperator<UserSession> change) {
+        long hash = mix(chatId);
+        return segmentFor(hash).update(chatId, hash, change, now());
+    }
+
+    // Отмечает обращение к сессии; false - сессии в таблице нет
+    public boolean touch(long chatId) {
+        long hash = mix(chatId);
+        return segmentFor(hash).touch(chatId, hash, now());
+    }
+
+    // Удаляет сессии без обращений дольше idleMillis, если evict их принял; возвращает число удалённых
+    public int evictIdle(long idleMillis, Predicate<UserSession> evict) {
+        int cutoff = now() - (int) Math.min(Integer.MAX_VALUE, idleMillis / 1000);
+        int evicted = 0;
+        for (Segment segment : segments) {
+            evicted += segment.evictIdle(cutoff, evict);
+        }
+        return evicted;
+    }
+
+    // Секунды с момента создания таблицы - помещаются в int
+    private int now() {
+        return (int) ((clock.getAsLong() - startMillis) / 1000);
+    }
+
+    public boolean remove(long chatId) {
+        boolean[] removed = new boolean[1];
+        update(chatId, current -> {
+            removed[0] = current != null;
+            return null;
+        });
+        return removed[0];
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void forEach(Consumer<UserSession> action) {
+        for (Segment segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 58)];
+    }
+
+    // Перемешивание битов (финализатор MurmurHash3), чтобы последовательные chatId не шли подряд
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (entries / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(16, capacity);
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private long[] keys;
+        private UserSession[] values;  // null - пустая ячейка
+        private int[] accessed;
+        private int size;
+
+        Segment(int expected) {
+            int capacity = capacityFor(expected);
+            keys = new long[capacity];
+            values = new UserSession[capacity];
+            accessed = new int[capacity];
+        }
+
+        UserSession get(long chatId, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                UserSession result = find(keys, values, chatId, hash);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                return find(keys, values, chatId, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // При оптимистичном чтении массивы могут быть от разных версий таблицы - поиск не должен
+        // выходить за границы и зацикливаться, результат всё равно отбросит validate
+        private static UserSession find(long[] keys, UserSession[] values, long chatId, long hash) {
+            int length = Math.min(keys.length, values.length);
+            int mask = length - 1;
+            int i = (int) hash & mask;
+            for (int probes = 0; probes < length; probes++, i = (i + 1) & mask) {
+                UserSession value = values[i];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[i] == chatId) {
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        UserSession update(long chatId, long hash, UnaryOperator<UserSession> change, int now) {
+            long stamp = lock.writeLock();
+            try {
+                return updateLocked(chatId, hash, change, now);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean touch(long chatId, long hash, int now) {
+            long stamp = lock.writeLock();
+            try {
+                int i = slotOf(chatId, hash);
+                if (values[i] == null) {
+                    return false;
+                }
+                accessed[i] = now;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int evictIdle(int cutoff, Predicate<UserSession> evict) {
+            long stamp = lock.writeLock();
+            try {
+                // Сначала собираем ключи: удаление со сдвигом переставляет ячейки
+                long[] idle = new long[16];
+                int count = 0;
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null && accessed[i] < cutoff) {
+                        if (count == idle.length) {
+                            idle = Arrays.copyOf(idle, count * 2);
+                        }
+                        idle[count++] = keys[i];
+                    }
+                }
+
+                int evicted = 0;
+                for (int j = 0; j < count; j++) {
+                    int i = slotOf(idle[j], mix(idle[j]));
+                    if (evict.test(values[i])) {
+                        deleteAt(i);
+                        evicted++;
+                    }
+                }
+                return evicted;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private int slotOf(long chatId, long hash) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            while (values[i] != null && keys[i] != chatId) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private UserSession updateLocked(long chatId, long hash, UnaryOperator<UserSession> change, int now) {
+            int i = slotOf(chatId, hash);
+
+            UserSession current = values[i];
+            UserSession next = change.apply(current);
+            if (next == current) {
+                return current;
+            }
+
+            if (next == null) {
+                if (current != null) {
+                    deleteAt(i);
+                }
+                return null;
+            }
+
+            if (current == null) {
+                keys[i] = chatId;
+                size++;
+            }
+            values[i] = next;
+            accessed[i] = now;
+
+            if (size > keys.length * LOAD_FACTOR) {
+                resize();
+            }
+            return next;
+        }
+
+        // Удаление со сдвигом назад: цепочки пробирования остаются без "дыр" и надгробий
+        private void deleteAt(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            int i = (slot + 1) & mask;
+            while (values[i] != null) {
+                int home = (int) mix(keys[i]) & mask;
+                // Элемент можно перенести в дыру, если его исходная позиция не лежит между дырой и i
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    accessed[hole] = accessed[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            values[hole] = null;
+            keys[hole] = 0;
+            size--;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            UserSession[] oldValues = values;
+            int[] oldAccessed = accessed;
+            keys = new long[oldKeys.length * 2];
+            values = new UserSession[oldValues.length * 2];
+            accessed = new int[oldAccessed.length * 2];
+
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = (int) mix(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                    accessed[i] = oldAccessed[j];
+                }
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void forEach(Consumer<UserSession> action) {
+            long stamp = lock.readLock();
+            try {
+                for (UserSession value : values) {
+                    if (value != null) {
+                        action.accept(value);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.utils.services;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    // Первый вызов по ключу выполняет загрузку, остальные ждут его результат или ошибку
+    public V execute(K key, Loader<V> loader) throws IOException {
+        calls.incrementAndGet();
+
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            collapsed.incrementAndGet();
+            return AsyncHttp.await(existing);
+        }
+
+        try {
+            V value = loader.load();
+            own.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Ошибку любого рода получают и ожидающие, иначе они зависнут на own
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    // Асинхронный вариант: ожидающие получают копию общего future, отмена копии не затрагивает остальных
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+        calls.incrementAndGet();
+
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            collapsed.incrementAndGet();
+            return existing.copy();
+        }
+
+        try {
+            loader.get().whenComplete((value, error) -> {
+                inFlight.remove(key, own);
+                if (error != null) {
+                    own.completeExceptionally(unwrap(error));
+                } else {
+                    own.complete(value);
+                }
+            });
+        } catch (Throwable e) {
+            inFlight.remove(key, own);
+            own.completeExceptionally(e);
+        }
+
+        return own.copy();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    public long getCalls() { return calls.get(); }
+    public long getCollapsed() { return collapsed.get(); }
+    public int getInFlight() { return inFlight.size(); }
+
+    @Override
+    public String toString() {
+        return String.format("SingleFlight{calls=%d, collapsed=%d, inFlight=%d}",
+                calls.get(), collapsed.get(), inFlight.size());
+    }
+}
@@ -1,18 +1,39 @@
 package com.utils.services;
 
+import com.utils.interfaces.ISessionStore;
 import com.utils.models.Coordinates;
+import com.utils.models.UserSession;
 import com.utils.models.OpenMeteoResponse;
 import com.utils.services.WeatherBotDialogLogic;
 
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardRemove;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-
-import java.util.HashMap;
-import java.util.Map;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
 
 public class TelegramBot extends TelegramLongPollingBot {
     private final String botUsername;
@@ -20,13 +41,47 @@ public class TelegramBot extends TelegramLongPollingBot {
     private final WeatherAPI weatherAPI;
     private final WeatherBotDialogLogic weatherBotDialogLogic;
     private final Geocoding geocodingService;
-
-    // Храним города пользователей
-    private final Map<Long, String> userCities = new HashMap<>();
-    // Храним состояния пользователей
-    private final Map<Long, UserState> userStates = new HashMap<>();
-    // Храним активные сессии
-    private final Map<Long, Boolean> userSessions = new HashMap<>();
+    private final ISessionStore sessionStore;
+    private final InlineWeather inlineWeather;
+    private static final int MAX_CITY_SUGGESTIONS = 3;
+    // Введённое название, предложенное кнопкой рядом с похожими городами: только его выбор уходит в Nominatim
+    private final TtlCache<Long, String> typedCityOffers = new TtlCache<>(10_000, Duration.ofMinutes(10));
+
+    // Каждое обновление сначала проходит почтовый ящик своего чата в быстрой полосе - строго по порядку,
+    // поэтому решение о сетевой полосе принимается по уже обновлённому состоянию сессии.
+    // Сетевая полоса со своим пределом одновременных задач выполняет работу, ждущую Open-Meteo или Nominatim:
+    //  - загрузка прогноза только читает сессию - город фиксируется в почтовом ящике, а сама загрузка
+    //    уходит в сетевую полосу, не задерживая меню и справку в том же чате;
+    //  - ввод города меняет сессию - пока он не обработан, все следующие обновления чата встают за ним
+    //    в сетевую полосу (orderedIo), чтобы порядок внутри чата сохранился
+    private final ChatDispatcher dispatcher = new ChatDispatcher();
+    private final ChatDispatcher ioLane = new ChatDispatcher();
+    private final ConcurrentHashMap<Long, Integer> orderedIo = new ConcurrentHashMap<>();
+    // Поднят, пока обработчик выполняется в быстрой полосе: сетевая часть ответа тогда уходит в ioLane
+    private static final ThreadLocal<Boolean> ON_FAST_LANE = new ThreadLocal<>();
+    // Политика отсечения при перегрузке (включается через enableAdmissionControl)
+    private volatile AdmissionPolicy admissionPolicy;
+    // Ответ "занят" готов заранее и уходит в чат не чаще раза в BUSY_REPLY_INTERVAL
+    private static final String BUSY_TEXT = "⏳ Бот сейчас перегружен и не успевает ответить. Повторите запрос через минуту.";
+    private static final Duration BUSY_REPLY_INTERVAL = Duration.ofSeconds(30);
+    private final TtlCache<Long, Boolean> busyReplied = new TtlCache<>(10_000, BUSY_REPLY_INTERVAL);
+
+    // Сессии пользователей: активность, состояние и город одной записью по chatId
+    private final SessionTable sessions = new SessionTable();
+    // Холодный уровень для простаивающих сессий (включается через enableIdleEviction)
+    private volatile ColdSessionTier coldTier;
+    private volatile long idleAfterMillis;
+    private ScheduledExecutorService evictor;
+    // Очередь отправки с лимитами Telegram (включается через enableOutboundQueue)
+    private volatile OutboundScheduler outbound;
+    // Прогрессивные ответы (включаются через enableProgressiveReplies): 0 - выключены
+    private volatile long progressDeadlineMillis;
+    // Время до первой реакции, которую видит пользователь (заглушка или сразу прогноз), и до итогового ответа
+    private final LatencyRecorder perceivedLatency = new LatencyRecorder();
+    private final LatencyRecorder completionLatency = new LatencyRecorder();
+    // Правки заглушки выполняются здесь, а не в потоке, завершившем загрузку: это может быть планировщик
+    // таймаутов JDK или колбэк OkHttp, раздающий прогнозы целой пачке
+    private final ExecutorService replyExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     // Перечисление состояний пользователя
     private enum UserState {
@@ -36,27 +91,399 @@ public class TelegramBot extends TelegramLongPollingBot {
     }
 
     public TelegramBot(String botUsername, String botToken) {
+        this(botUsername, botToken, new WeatherAPI());
+    }
+
+    public TelegramBot(String botUsername, String botToken, WeatherAPI weatherAPI) {
+        this(botUsername, botToken, weatherAPI, null);
+    }
+
+    // sessionStore может быть null - тогда сессии живут только в памяти
+    public TelegramBot(String botUsername, String botToken, WeatherAPI weatherAPI, ISessionStore sessionStore) {
         this.botUsername = botUsername;
         this.botToken = botToken;
-        this.weatherAPI = new WeatherAPI();
+        this.weatherAPI = weatherAPI;
         this.weatherBotDialogLogic = new WeatherBotDialogLogic(weatherAPI);
-        this.geocodingService = new Geocoding();
+        this.geocodingService = weatherAPI.getGeocoding();
+        this.sessionStore = sessionStore;
+        this.inlineWeather = new InlineWeather(weatherAPI);
+
+        if (sessionStore != null) {
+            for (UserSession session : sessionStore.loadAll()) {
+                sessions.put(session);
+            }
+            sessionStore.snapshotFrom(sessions::forEach);
+        }
+    }
+
+    private boolean isSessionActive(long chatId) {
+        UserSession session = sessions.get(chatId);
+        return session != null && session.isActive();
+    }
+
+    private UserState getUserState(long chatId) {
+        UserSession session = sessions.get(chatId);
+        if (session == null) {
+            return UserState.DEFAULT;
+        }
+        UserState[] states = UserState.values();
+        int state = session.getState();
+        return state >= 0 && state < states.length ? states[state] : UserState.DEFAULT;
+    }
+
+    private String getUserCity(long chatId) {
+        UserSession session = sessions.get(chatId);
+        return session != null ? session.getCity() : null;
+    }
+
+    // Атомарно меняет сессию; изменённую запись ставит в очередь хранилища, не задерживая обработку
+    private void updateSession(long chatId, UnaryOperator<UserSession> change) {
+        UserSession[] before = new UserSession[1];
+        UserSession after = sessions.update(chatId, current -> {
+            before[0] = current;
+            return change.apply(current != null ? current : UserSession.inactive(chatId));
+        });
+        if (sessionStore != null && after != before[0]) {
+            sessionStore.save(after);
+        }
+    }
+
+    // Пачку от long polling раскладываем по почтовым ящикам чатов и сразу возвращаемся к опросу
+    @Override
+    public void onUpdatesReceived(List<Update> updates) {
+        for (Update update : updates) {
+            dispatcher.dispatch(chatIdOf(update), () -> route(update), () -> onUpdateShed(update));
+        }
+    }
+
+    // Выполняется в почтовом ящике чата после всех предыдущих обновлений этого чата
+    private void route(Update update) {
+        long chatId = chatIdOf(update);
+        if (update.hasMessage()) {
+            touchSession(chatId);
+        }
+
+        if (orderedIo.containsKey(chatId) || needsGeocoding(update)) {
+            orderedIo.merge(chatId, 1, Integer::sum);
+            ioLane.dispatch(chatId, () -> {
+                try {
+                    onUpdateReceived(update);
+                } finally {
+                    releaseOrderedIo(chatId);
+                }
+            }, () -> {
+                releaseOrderedIo(chatId);
+                onUpdateShed(update);
+            });
+            return;
+        }
+
+        ON_FAST_LANE.set(Boolean.TRUE);
+        try {
+            onUpdateReceived(update);
+        } finally {
+            ON_FAST_LANE.remove();
+        }
+    }
+
+    private void releaseOrderedIo(long chatId) {
+        orderedIo.computeIfPresent(chatId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    // Ввод города, который уйдёт в Nominatim, ждёт его в сетевой полосе
+    private boolean needsGeocoding(Update update) {
+        if (!update.hasMessage() || !update.getMessage().hasText()) {
+            return false;
+        }
+        String text = update.getMessage().getText();
+        long chatId = update.getMessage().getChatId();
+        return getUserState(chatId) == UserState.WAITING_FOR_CITY
+                && isSessionActive(chatId)
+                && !text.startsWith("/")
+                && !text.equals("↩️ Назад") && !text.equals("↩️ Отмена")
+                && geocodesOverNetwork(chatId, text);
+    }
+
+    // Справочник и кэш не знают название, и похожих городов предложить нельзя - или пользователь уже выбрал
+    // введённое название среди них
+    private boolean geocodesOverNetwork(long chatId, String text) {
+        return geocodingService.getCachedCoordinates(text) == null
+                && (isOfferedAsTyped(chatId, text) || suggestCities(geocodingService.getCityIndex(), text).isEmpty());
+    }
+
+    private boolean isOfferedAsTyped(long chatId, String text) {
+        return Geocoding.normalize(text).equals(typedCityOffers.get(chatId));
+    }
+
+    // Сетевая часть ответа, не меняющая сессию: из быстрой полосы уходит в сетевую, в остальных случаях
+    // (сетевая полоса, прямой вызов onUpdateReceived) выполняется сразу
+    private void runNetworkPart(long chatId, Runnable task) {
+        if (ON_FAST_LANE.get() == null) {
+            task.run();
+            return;
+        }
+        ioLane.dispatch(chatId, task, () -> replyBusy(chatId));
+    }
+
+    private static long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        // У inline-запроса нет чата - очередь по пользователю, чтобы запросы разных людей шли параллельно
+        if (update.hasInlineQuery()) {
+            return update.getInlineQuery().getFrom().getId();
+        }
+        return 0;
+    }
+
+    public ChatDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public ChatDispatcher getIoLane() {
+        return ioLane;
+    }
+
+    // Очереди обеих полос ограничены: при переполнении или ожидании дольше latencyTarget лишние обновления отсекаются
+    public void enableAdmissionControl(int capacity, Duration latencyTarget, AdmissionPolicy policy) {
+        dispatcher.enableAdmissionControl(capacity, latencyTarget, policy);
+        ioLane.enableAdmissionControl(capacity, latencyTarget, policy);
+        admissionPolicy = policy;
+    }
+
+    // Одновременно ждать Open-Meteo и Nominatim могут не больше maxConcurrent обновлений
+    public void limitIoConcurrency(int maxConcurrent) {
+        ioLane.limitConcurrency(maxConcurrent);
+    }
+
+    // Вызывается в потоке приёма обновлений, поэтому ответ только ставится в очередь и не ждёт отправки
+    private void onUpdateShed(Update update) {
+        if (update.hasMessage()) {
+            replyBusy(update.getMessage().getChatId());
+        }
+    }
+
+    private void replyBusy(long chatId) {
+        if (admissionPolicy != AdmissionPolicy.REPLY_BUSY) {
+            return;
+        }
+        if (busyReplied.get(chatId) != null) {
+            return;
+        }
+        busyReplied.put(chatId, Boolean.TRUE);
+
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(BUSY_TEXT);
+
+        OutboundScheduler queue = outbound;
+        if (queue != null) {
+            queue.submit(chatId, message);
+            return;
+        }
+        try {
+            executeAsync(message).exceptionally(e -> {
+                System.err.println("Не удалось отправить ответ о перегрузке: " + e.getMessage());
+                return null;
+            });
+        } catch (TelegramApiException e) {
+            System.err.println("Не удалось отправить ответ о перегрузке: " + e.getMessage());
+        }
+    }
+
+    // Простаивающие дольше idleAfter сессии переезжают в холодное хранилище на диске
+    public synchronized void enableIdleEviction(Duration idleAfter, ColdSessionTier coldTier) {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        this.coldTier = coldTier;
+        this.idleAfterMillis = idleAfter.toMillis();
+
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1_000, idleAfterMillis / 4);
+        evictor.scheduleWithFixedDelay(this::evictIdleSessions, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public int evictIdleSessions() {
+        ColdSessionTier tier = coldTier;
+        if (tier == null) {
+            return 0;
+        }
+
+        int evicted = sessions.evictIdle(idleAfterMillis, session -> {
+            // Завершённая сессия без города ничем не отличается от отсутствующей - просто забываем её
+            if (session.isActive() || session.getCity() != null) {
+                if (!ColdSessionTier.fits(session)) {
+                    return false;
+                }
+                try {
+                    tier.put(session);
+                } catch (IOException e) {
+                    System.err.println("Не удалось выгрузить сессию " + session.getChatId() + ": " + e.getMessage());
+                    return false;
+                }
+            } else {
+                tier.remove(session.getChatId());
+            }
+            if (sessionStore != null) {
+                sessionStore.remove(session.getChatId());
+            }
+            return true;
+        });
+        if (evicted > 0) {
+            tier.flush();
+        }
+        return evicted;
+    }
+
+    // Отмечает активность; сессию, выгруженную по простою, поднимает из холодного хранилища
+    private void touchSession(long chatId) {
+        ColdSessionTier tier = coldTier;
+        if (sessions.touch(chatId) || tier == null) {
+            return;
+        }
+        UserSession cold = tier.get(chatId);
+        if (cold != null) {
+            UserSession restored = sessions.update(chatId, current -> current != null ? current : cold);
+            // Сессия снова живёт в памяти и журнале; копия в холодном хранилище устарела бы после первой же правки
+            if (sessionStore != null && restored == cold) {
+                sessionStore.save(cold);
+            }
+            tier.remove(chatId);
+        }
+    }
+
+    public SessionTable getSessions() {
+        return sessions;
+    }
+
+    // Ответы уходят асинхронно через очередь с общим и per-chat лимитами Telegram
+    public synchronized OutboundScheduler enableOutboundQueue() {
+        if (outbound == null) {
+            outbound = OutboundScheduler.withTelegramLimits(this::execute, this::forgetBlockedChat);
+        }
+        return outbound;
+    }
+
+    private void deliver(long chatId, SendMessage message) {
+        OutboundScheduler queue = outbound;
+        if (queue != null) {
+            queue.submit(chatId, message);
+            return;
+        }
+
+        try {
+            execute(message);
+        } catch (TelegramApiException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Запрос, ответ которого нужен (заглушка, правка): через очередь - с теми же лимитами, 429 и 403,
+    // что и у обычных сообщений; без очереди - сразу, заблокировавший бота чат забывается
+    private <T extends Serializable> CompletableFuture<T> request(long chatId, BotApiMethod<T> method) {
+        OutboundScheduler queue = outbound;
+        if (queue != null) {
+            return queue.submit(chatId, () -> execute(method));
+        }
+
+        try {
+            return CompletableFuture.completedFuture(execute(method));
+        } catch (TelegramApiException e) {
+            if (e instanceof TelegramApiRequestException request && Integer.valueOf(403).equals(request.getErrorCode())) {
+                forgetBlockedChat(chatId);
+            }
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Throwable causeOf(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static boolean apiResponseContains(Throwable e, String description) {
+        return e instanceof TelegramApiRequestException request && request.getApiResponse() != null
+                && request.getApiResponse().contains(description);
+    }
+
+    // Прогноз, которого нет в кэше, не заставляет ждать в тишине: сразу уходит заглушка, а когда прогноз
+    // загрузится, она правится в ответ. Не успел за deadline - показывается последний известный прогноз
+    // и заменяется свежим, когда тот всё-таки придёт
+    public void enableProgressiveReplies(Duration deadline) {
+        if (deadline.isNegative() || deadline.isZero()) {
+            throw new IllegalArgumentException("Срок ожидания прогноза должен быть положительным: " + deadline);
+        }
+        progressDeadlineMillis = deadline.toMillis();
+    }
+
+    public LatencyRecorder getPerceivedLatency() {
+        return perceivedLatency;
+    }
+
+    public LatencyRecorder getCompletionLatency() {
+        return completionLatency;
+    }
+
+    // Пользователь заблокировал бота - его сессия больше не нужна
+    private void forgetBlockedChat(long chatId) {
+        sessions.remove(chatId);
+        if (sessionStore != null) {
+            sessionStore.remove(chatId);
+        }
+        ColdSessionTier tier = coldTier;
+        if (tier != null) {
+            tier.remove(chatId);
+        }
+    }
+
+    @Override
+    public void onClosing() {
+        super.onClosing();
+        dispatcher.close();
+        ioLane.close();
+        if (outbound != null) {
+            outbound.close();
+        }
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        replyExecutor.shutdown();
     }
 
     @Override
     public void onUpdateReceived(Update update) {
+        if (update.hasInlineQuery()) {
+            handleInlineQuery(update.getInlineQuery());
+            return;
+        }
+        if (update.hasCallbackQuery()) {
+            handleCallbackQuery(update.getCallbackQuery());
+            return;
+        }
+
         if (update.hasMessage() && update.getMessage().hasText()) {
             String messageText = update.getMessage().getText();
             long chatId = update.getMessage().getChatId();
+            touchSession(chatId);
+            if (outbound != null) {
+                outbound.unblock(chatId);
+            }
 
             // Проверяем активна ли сессия пользователя
-            if (!userSessions.getOrDefault(chatId, false) && !messageText.equals("/start")) {
+            if (!isSessionActive(chatId) && !messageText.equals("/start")) {
                 sendSessionInactiveMessage(chatId);
                 return;
             }
 
             // Получаем текущее состояние пользователя
-            UserState currentState = userStates.getOrDefault(chatId, UserState.DEFAULT);
+            UserState currentState = getUserState(chatId);
 
             // Обрабатываем команды, которые работают в любом состоянии
             if (messageText.equals("/start")) {
@@ -74,7 +501,7 @@ public class TelegramBot extends TelegramLongPollingBot {
             }
 
             // Если сессия не активна, игнорируем сообщения
-            if (!userSessions.getOrDefault(chatId, false)) {
+            if (!isSessionActive(chatId)) {
                 return;
             }
 
@@ -93,9 +520,143 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
+    // Ответ собирается асинхронно: поток почтового ящика не ждёт загрузки прогнозов
+    // Отправка - в replyExecutor: ответ завершает поток последней карточки, а это может быть
+    // планировщик таймаутов JDK или колбэк OkHttp, раздающий прогнозы целой пачке
+    private void handleInlineQuery(InlineQuery query) {
+        inlineWeather.answer(query).thenAcceptAsync(answer -> {
+            try {
+                execute(answer);
+            } catch (TelegramApiException e) {
+                throw new CompletionException(e);
+            }
+        }, replyExecutor).exceptionally(e -> {
+            System.err.println("Не удалось ответить на inline-запрос: " + causeOf(e).getMessage());
+            return null;
+        });
+    }
+
+    // Кнопки под прогнозом переключают период в том же сообщении: ответ на callback уходит сразу,
+    // а прогноз заменяет текст через editMessageText вместо нового сообщения с клавиатурой
+    private void handleCallbackQuery(CallbackQuery query) {
+        Message message = query.getMessage();
+        if (message == null) {
+            answerCallback(query, null);
+            return;
+        }
+
+        long chatId = message.getChatId();
+        touchSession(chatId);
+        if (outbound != null) {
+            outbound.unblock(chatId);
+        }
+
+        if (!isSessionActive(chatId)) {
+            answerCallback(query, weatherBotDialogLogic.farewallWordsForInactive());
+            return;
+        }
+
+        String data = query.getData() != null ? query.getData() : "";
+        if (data.startsWith("weather_") && getUserCity(chatId) == null) {
+            answerCallback(query, "❌ Сначала выберите город");
+            return;
+        }
+        answerCallback(query, null);
+
+        switch (data) {
+            case "weather_today":
+                editWeatherForPeriod(chatId, message, 1);
+                break;
+            case "weather_tomorrow":
+                editWeatherForPeriod(chatId, message, 2);
+                break;
+            case "weather_3days":
+                editWeatherForPeriod(chatId, message, 3);
+                break;
+            case "weather_week":
+                editWeatherForPeriod(chatId, message, 7);
+                break;
+            case "city_moscow":
+                chooseCity(chatId, message, "Москва");
+                break;
+            case "city_spb":
+                chooseCity(chatId, message, "Санкт-Петербург");
+                break;
+            case "city_novosibirsk":
+                chooseCity(chatId, message, "Новосибирск");
+                break;
+            case "city_ekb":
+                chooseCity(chatId, message, "Екатеринбург");
+                break;
+            case "city_kazan":
+                chooseCity(chatId, message, "Казань");
+                break;
+            case "city_sochi":
+                chooseCity(chatId, message, "Сочи");
+                break;
+            default:
+                // Кнопка из старой версии бота - ответа на callback достаточно
+        }
+    }
+
+    // Telegram держит у кнопки индикатор загрузки, пока не получит ответ; text показывается всплывающей подсказкой
+    private void answerCallback(CallbackQuery query, String text) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(query.getId());
+        answer.setText(text);
+        try {
+            executeAsync(answer).exceptionally(e -> {
+                System.err.println("Не удалось ответить на callback: " + e.getMessage());
+                return null;
+            });
+        } catch (TelegramApiException e) {
+            System.err.println("Не удалось ответить на callback: " + e.getMessage());
+        }
+    }
+
+    private void chooseCity(long chatId, Message message, String city) {
+        updateSession(chatId, session -> session.withCity(city).withState(stateCode(UserState.DEFAULT)));
+        editWeatherForPeriod(chatId, message, 1);
+    }
+
+    private void editWeatherForPeriod(long chatId, Message message, int days) {
+        String city = getUserCity(chatId);
+        runNetworkPart(chatId, () -> {
+            String weatherText = weatherBotDialogLogic.getWeatherForPeriod(city, days);
+            editMessage(chatId, message.getMessageId(), message.getText(), weatherText,
+                    KeyboardFactory.createInlineWeatherKeyboard());
+        });
+    }
+
+    private void editMessage(long chatId, int messageId, String currentText, String text, InlineKeyboardMarkup keyboard) {
+        // Повторное нажатие той же кнопки: Telegram всё равно отклонит правку с "message is not modified"
+        if (text.equals(currentText)) {
+            return;
+        }
+
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId);
+        edit.setMessageId(messageId);
+        edit.setText(text);
+        edit.setReplyMarkup(keyboard);
+        request(chatId, edit).exceptionally(e -> {
+            Throwable cause = causeOf(e);
+            if (apiResponseContains(cause, "message is not modified")) {
+                return null;
+            }
+            System.err.println("Не удалось изменить сообщение в чате " + chatId + ": " + cause.getMessage());
+            // Сообщение удалено или слишком старое для правки - присылаем прогноз заново.
+            // Другие ошибки (лимиты уже отработала очередь, чат заблокирован) новым сообщением не лечатся
+            if (apiResponseContains(cause, "message to edit not found")
+                    || apiResponseContains(cause, "message can't be edited")) {
+                sendMessage(chatId, text, keyboard);
+            }
+            return null;
+        });
+    }
+
     private void startUserSession(long chatId) {
-        userSessions.put(chatId, true);
-        userStates.put(chatId, UserState.DEFAULT);
+        updateSession(chatId, session -> session.withActive(true).withState(stateCode(UserState.DEFAULT)));
     }
 
     private void endUserSession(long chatId) {
@@ -108,18 +669,12 @@ public class TelegramBot extends TelegramLongPollingBot {
         keyboardRemove.setRemoveKeyboard(true);
         message.setReplyMarkup(keyboardRemove);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
-
-        // Завершаем сессию
-        userSessions.put(chatId, false);
-        userStates.put(chatId, UserState.INACTIVE);
+        deliver(chatId, message);
 
-        // Очищаем данные пользователя (опционально)
-        userCities.remove(chatId);
+        // Завершаем сессию и очищаем данные пользователя (опционально)
+        updateSession(chatId, session -> session.withActive(false)
+                .withState(stateCode(UserState.INACTIVE))
+                .withCity(null));
     }
 
     private void sendSessionInactiveMessage(long chatId) {
@@ -131,11 +686,7 @@ public class TelegramBot extends TelegramLongPollingBot {
         keyboardRemove.setRemoveKeyboard(true);
         message.setReplyMarkup(keyboardRemove);
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        deliver(chatId, message);
     }
 
     private void handleDefaultState(long chatId, String messageText) {
@@ -168,7 +719,7 @@ public class TelegramBot extends TelegramLongPollingBot {
                 // Если это не команда и не кнопка, игнорируем или показываем подсказку
                 sendMessage(chatId,
                         "🤔 Используйте кнопки для навигации или введите /help для справки",
-                        KeyboardFactory.createMainWeatherKeyboard()
+                        KeyboardFactory.mainWeatherKeyboard()
                 );
         }
     }
@@ -181,38 +732,89 @@ public class TelegramBot extends TelegramLongPollingBot {
             return;
         }
 
-        try {
+        String city = messageText;
+        Coordinates coords = geocodingService.getCachedCoordinates(city);
+
+        // Названия нет в справочнике и кэше: похожие города предлагаем сразу, без запроса к Nominatim.
+        // Опечатку не исправляем молча - иначе Орск превратился бы в Омск, поэтому введённое название
+        // тоже идёт кнопкой и геокодируется, только если пользователь выбрал именно его
+        if (coords == null) {
+            boolean typedChosen = isOfferedAsTyped(chatId, messageText);
+            List<String> suggestions = typedChosen
+                    ? List.of()
+                    : suggestCities(geocodingService.getCityIndex(), messageText);
+            if (!suggestions.isEmpty()) {
+                typedCityOffers.put(chatId, Geocoding.normalize(messageText));
+                List<String> options = new ArrayList<>(suggestions);
+                options.add(messageText);
+                sendMessage(chatId,
+                        "🤔 Города \"" + messageText + "\" нет в справочнике. Возможно, вы имели в виду один из этих?\n" +
+                                "Если нет - нажмите \"" + messageText + "\", и я поищу его по карте",
+                        KeyboardFactory.createSuggestionsKeyboard(options)
+                );
+                return;
+            }
+            if (typedChosen) {
+                typedCityOffers.invalidate(chatId);
+            }
             // Проверяем, что город существует через геокодирование
-            Coordinates coords = geocodingService.getCoordinates(messageText);
-
-            // Сохраняем город для пользователя
-            userCities.put(chatId, messageText);
-            setUserState(chatId, UserState.DEFAULT); // Возвращаем в обычное состояние
-
-            String confirmation = String.format(
-                    "✅ Город установлен: %s\n\nТеперь вы можете посмотреть погоду",
-                    coords.getDisplayName()
-            );
-
-            sendMessage(chatId, confirmation, KeyboardFactory.createMainWeatherKeyboard());
+            coords = findCoordinates(city);
+        }
 
-        } catch (Exception e) {
+        if (coords == null) {
             sendMessage(chatId,
                     "❌ Не удалось найти город: " + messageText +
                             "\nПопробуйте уточнить название (например: Москва, Россия) или нажмите ↩️ Отмена",
-                    KeyboardFactory.createCancelKeyboard()
+                    KeyboardFactory.cancelKeyboard()
             );
+            return;
+        }
+
+        // Сохраняем город для пользователя
+        // и возвращаем в обычное состояние
+        String chosenCity = city;
+        updateSession(chatId, session -> session.withCity(chosenCity).withState(stateCode(UserState.DEFAULT)));
+
+        String confirmation = String.format(
+                "✅ Город установлен: %s\n\nТеперь вы можете посмотреть погоду",
+                coords.getDisplayName()
+        );
+
+        sendMessage(chatId, confirmation, KeyboardFactory.mainWeatherKeyboard());
+    }
+
+    // null, если город не найден или геокодирование недоступно
+    private Coordinates findCoordinates(String city) {
+        try {
+            return geocodingService.getCoordinates(city);
+        } catch (Exception e) {
+            return null;
         }
     }
 
+    private static List<String> suggestCities(CityNameIndex cityIndex, String messageText) {
+        if (cityIndex == null) {
+            return List.of();
+        }
+        List<String> suggestions = new ArrayList<>();
+        for (CityNameIndex.Match match : cityIndex.suggest(messageText, MAX_CITY_SUGGESTIONS)) {
+            suggestions.add(match.getLabel());
+        }
+        return suggestions;
+    }
+
     private void setUserState(long chatId, UserState state) {
-        userStates.put(chatId, state);
+        updateSession(chatId, session -> session.withState(stateCode(state)));
+    }
+
+    private static byte stateCode(UserState state) {
+        return (byte) state.ordinal();
     }
 
     private void sendWelcomeMessage(long chatId) {
         setUserState(chatId, UserState.DEFAULT);
         String userName = getUserName(chatId);
-        String city = userCities.get(chatId);
+        String city = getUserCity(chatId);
 
         String text;
         if (city != null) {
@@ -230,14 +832,14 @@ public class TelegramBot extends TelegramLongPollingBot {
             );
         }
 
-        sendMessage(chatId, text, KeyboardFactory.createMainWeatherKeyboard());
+        sendMessage(chatId, text, KeyboardFactory.mainWeatherKeyboard());
     }
 
     private void askForCity(long chatId) {
         sendMessage(chatId,
                 "🏙 Введите название города:\n(например: Москва, Санкт-Петербург, London)\n\n" +
                         "Или нажмите ↩️ Отмена для возврата",
-                KeyboardFactory.createCancelKeyboard()
+                KeyboardFactory.cancelKeyboard()
         );
     }
 
@@ -245,49 +847,147 @@ public class TelegramBot extends TelegramLongPollingBot {
         sendMessage(chatId,
                 "Выберите город из списка или введите свой:\n\n" +
                         "Или нажмите ↩️ Отмена для возврата",
-                KeyboardFactory.createCitiesKeyboard()
+                KeyboardFactory.citiesKeyboard()
         );
     }
 
     private void sendHelp(long chatId) {
         String helpText = weatherBotDialogLogic.getHelp();
 
-        sendMessage(chatId, helpText, KeyboardFactory.createMainWeatherKeyboard());
+        sendMessage(chatId, helpText, KeyboardFactory.mainWeatherKeyboard());
         setUserState(chatId, UserState.DEFAULT);
     }
 
     private void sendWeatherForPeriod(long chatId, int days) {
-        String city = userCities.get(chatId);
+        String city = getUserCity(chatId);
 
         if (city == null) {
             sendMessage(chatId,
                     "❌ Сначала выберите город с помощью кнопки \"📍 Сменить город\"",
-                    KeyboardFactory.createMainWeatherKeyboard()
+                    KeyboardFactory.mainWeatherKeyboard()
             );
             return;
         }
 
+        runNetworkPart(chatId, () -> sendWeather(chatId, city, days));
+    }
+
+    private void sendWeather(long chatId, String city, int days) {
+        if (progressDeadlineMillis > 0) {
+            sendWeatherProgressively(chatId, city, days);
+            return;
+        }
+
         try {
             String weatherText = weatherBotDialogLogic.getWeatherForPeriod(city, days);
-            sendMessage(chatId, weatherText, KeyboardFactory.createMainWeatherKeyboard());
+            // Нижняя клавиатура остаётся у пользователя, под прогнозом - кнопки для правки его на месте
+            sendMessage(chatId, weatherText, KeyboardFactory.createInlineWeatherKeyboard());
 
         } catch (Exception e) {
             sendMessage(chatId,
                     "❌ Ошибка при получении погоды для: " + city +
                             "\nПопробуйте выбрать другой город",
-                    KeyboardFactory.createMainWeatherKeyboard()
+                    KeyboardFactory.mainWeatherKeyboard()
             );
             e.printStackTrace();
         }
     }
 
+    private void sendWeatherProgressively(long chatId, String city, int days) {
+        long started = System.nanoTime();
+        CompletableFuture<String> forecast = weatherBotDialogLogic.getWeatherForPeriodAsync(city, days);
+
+        // Прогноз уже в кэше - заглушка только добавила бы лишнее сообщение
+        if (forecast.isDone() && !forecast.isCompletedExceptionally()) {
+            sendMessage(chatId, forecast.join(), KeyboardFactory.createInlineWeatherKeyboard());
+            long elapsed = System.nanoTime() - started;
+            perceivedLatency.record(elapsed);
+            completionLatency.record(elapsed);
+            return;
+        }
+
+        CompletableFuture<Message> placeholderSent = sendPlaceholder(chatId, city);
+        placeholderSent.thenAccept(placeholder -> {
+            if (placeholder != null) {
+                perceivedLatency.record(System.nanoTime() - started);
+            }
+        });
+
+        // Ответ правит заглушку, поэтому ждёт и её отправки (она идёт через очередь с лимитами), и прогноза
+        // или срока ожидания
+        CompletableFuture<String> timed = forecast.copy()
+                .completeOnTimeout(null, progressDeadlineMillis, TimeUnit.MILLISECONDS);
+        CompletableFuture.allOf(placeholderSent, timed)
+                .whenCompleteAsync((done, failure) -> {
+                    Message placeholder = placeholderSent.join();
+                    boolean error = timed.isCompletedExceptionally();
+                    String weatherText = error ? null : timed.join();
+                    if (weatherText != null) {
+                        showForecast(chatId, placeholder, weatherText, started);
+                        return;
+                    }
+
+                    String lastKnown = weatherBotDialogLogic.getLastKnownWeatherForPeriod(city, days);
+                    String fallback;
+                    if (lastKnown != null) {
+                        fallback = "⚠️ Свежий прогноз пока не загрузился, показан последний известный:\n\n" + lastKnown;
+                    } else if (!error) {
+                        // Загрузка не провалилась, а просто медленная - об ошибке говорить рано
+                        fallback = "⏳ Прогноз для " + city + " загружается дольше обычного.\n"
+                                + "Он появится здесь, как только будет готов";
+                    } else {
+                        fallback = "❌ Ошибка при получении погоды для: " + city + "\nПопробуйте выбрать другой город";
+                    }
+                    showForecast(chatId, placeholder, fallback, started);
+
+                    // Загрузка ещё идёт - когда закончится, заменим запасной ответ свежим
+                    if (!error) {
+                        forecast.thenAcceptAsync(fresh -> {
+                            if (placeholder != null) {
+                                editMessage(chatId, placeholder.getMessageId(), fallback, fresh,
+                                        KeyboardFactory.createInlineWeatherKeyboard());
+                            } else {
+                                sendMessage(chatId, fresh, KeyboardFactory.createInlineWeatherKeyboard());
+                            }
+                        }, replyExecutor);
+                    }
+                }, replyExecutor);
+    }
+
+    // Заглушка не склеивается с другими сообщениями: для последующей правки нужен её message_id.
+    // Не удалось отправить - null, тогда прогноз придёт отдельным сообщением
+    private CompletableFuture<Message> sendPlaceholder(long chatId, String city) {
+        if (!isSessionActive(chatId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText("⏳ Загружаю прогноз для " + city + "...");
+        return request(chatId, message).exceptionally(e -> {
+            System.err.println("Не удалось отправить заглушку в чат " + chatId + ": " + causeOf(e).getMessage());
+            return null;
+        });
+    }
+
+    private void showForecast(long chatId, Message placeholder, String text, long started) {
+        if (placeholder != null) {
+            editMessage(chatId, placeholder.getMessageId(), placeholder.getText(), text,
+                    KeyboardFactory.createInlineWeatherKeyboard());
+        } else {
+            sendMessage(chatId, text, KeyboardFactory.createInlineWeatherKeyboard());
+            perceivedLatency.record(System.nanoTime() - started);
+        }
+        completionLatency.record(System.nanoTime() - started);
+    }
+
     private String getUserName(long chatId) {
         return "друг";
     }
 
-    private void sendMessage(long chatId, String text, ReplyKeyboardMarkup keyboard) {
+    private void sendMessage(long chatId, String text, ReplyKeyboard keyboard) {
         // Проверяем активна ли сессия
-        if (!userSessions.getOrDefault(chatId, false)) {
+        if (!isSessionActive(chatId)) {
             return;
         }
 
@@ -298,11 +998,7 @@ public class TelegramBot extends TelegramLongPollingBot {
             message.setReplyMarkup(keyboard);
         }
 
-        try {
-            execute(message);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+        deliver(chatId, message);
     }
 
     @Override
@@ -0,0 +1,129 @@
+package com.utils.services;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+public class TtlCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    // accessOrder = true: порядок итерации от давно не использованных к свежим (LRU)
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class Entry<V> {
+        final V value;
+        final long createdAt;
+
+        Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public TtlCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::currentTimeMillis);
+    }
+
+    public TtlCache(int maxSize, Duration ttl, LongSupplier clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        if (isExpired(entry)) {
+            entries.remove(key);
+            evictions++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, clock.getAsLong()));
+
+        if (entries.size() > maxSize) {
+            removeExpired();
+        }
+
+        // Если после очистки просроченных места всё ещё нет, выкидываем самые старые по доступу
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    // Возраст записей в миллисекундах, от давно не использованных к свежим
+    public synchronized Map<K, Long> getEntryAges() {
+        long now = clock.getAsLong();
+        Map<K, Long> ages = new LinkedHashMap<>();
+        for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+            ages.put(entry.getKey(), now - entry.getValue().createdAt);
+        }
+        return ages;
+    }
+
+    private void removeExpired() {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next().getValue())) {
+                iterator.remove();
+                evictions++;
+            }
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return clock.getAsLong() - entry.createdAt >= ttlMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TtlCache{size=%d/%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.2f}",
+                entries.size(), maxSize, hits, misses, evictions, getHitRatio());
+    }
+}
@@ -0,0 +1,383 @@
+package com.utils.services;
+
+import com.utils.interfaces.ISessionStore;
+import com.utils.models.UserSession;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Хранилище сессий: журнал упреждающей записи (WAL) + периодические снимки.
+// save/remove только кладут операцию в очередь; фоновый писатель забирает всё накопившееся,
+// пишет одной пачкой и делает один fsync на пачку (group commit).
+// Снимок пишется из таблицы вызывающего (snapshotFrom) во временный файл и атомарно переименовывается,
+// после чего WAL обнуляется; своей копии сессий хранилище не держит.
+// Запись: int длина, int CRC32, byte операция, long chatId, [byte активна, byte состояние, short длина города + UTF-8]
+public class WalSessionStore implements ISessionStore {
+    public static final String SNAPSHOT_FILE = "sessions.snapshot";
+    public static final String WAL_FILE = "sessions.wal";
+
+    private static final int SNAPSHOT_MAGIC = 0x53534E31; // "SSN1"
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int NO_CITY = 0xFFFF;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final int MAX_BATCH = 4096;
+    private static final int SNAPSHOT_CHUNK_BYTES = 256 * 1024;
+    // Снимок и по времени, и по объёму WAL - чтобы время восстановления не росло без предела
+    private static final long SNAPSHOT_WAL_RECORDS = 1_000_000;
+
+    private final Path snapshotFile;
+    private final Path walFile;
+    private final long snapshotIntervalNanos;
+    private final BlockingQueue<Op> queue = new LinkedBlockingQueue<>();
+    // Восстановленные сессии живут до первого loadAll
+    private Collection<UserSession> recovered;
+    private final int recoveredCount;
+    private volatile Source snapshotSource;
+    private final Thread writer;
+
+    private FileChannel wal;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private long walRecords;
+    private long nextSnapshotAt;
+    private volatile boolean closed;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final long recoveryMillis;
+
+    private static final class Op {
+        static final Op STOP = new Op(REMOVE, 0, null);
+
+        final byte type;
+        final long chatId;
+        final UserSession session;
+
+        Op(byte type, long chatId, UserSession session) {
+            this.type = type;
+            this.chatId = chatId;
+            this.session = session;
+        }
+    }
+
+    private WalSessionStore(Path directory, Duration snapshotInterval) throws IOException {
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.walFile = directory.resolve(WAL_FILE);
+        this.snapshotIntervalNanos = snapshotInterval.toNanos();
+
+        long start = System.nanoTime();
+        Map<Long, UserSession> sessions = recover();
+        this.recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+        this.recovered = sessions.values();
+        this.recoveredCount = sessions.size();
+
+        this.wal = FileChannel.open(walFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.nextSnapshotAt = System.nanoTime() + snapshotIntervalNanos;
+
+        this.writer = new Thread(this::runWriter, "session-store-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // Восстанавливает сессии из снимка и WAL и запускает фоновую запись
+    public static WalSessionStore open(Path directory, Duration snapshotInterval) throws IOException {
+        return new WalSessionStore(directory, snapshotInterval);
+    }
+
+    @Override
+    public synchronized Collection<UserSession> loadAll() {
+        Collection<UserSession> sessions = recovered;
+        recovered = List.of();
+        return sessions;
+    }
+
+    @Override
+    public void snapshotFrom(Source sessions) {
+        this.snapshotSource = sessions;
+    }
+
+    @Override
+    public void save(UserSession session) {
+        enqueue(new Op(PUT, session.getChatId(), session));
+    }
+
+    @Override
+    public void remove(long chatId) {
+        enqueue(new Op(REMOVE, chatId, null));
+    }
+
+    private void enqueue(Op op) {
+        if (closed) {
+            throw new IllegalStateException("Хранилище сессий закрыто");
+        }
+        queue.add(op);
+    }
+
+    // Дописывает очередь, делает снимок и останавливает писателя
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(Op.STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+    }
+
+    private void runWriter() {
+        List<Op> batch = new ArrayList<>(MAX_BATCH);
+        boolean stopping = false;
+
+        while (!stopping) {
+            try {
+                long waitNanos = Math.max(0, nextSnapshotAt - System.nanoTime());
+                Op first = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+
+            stopping |= batch.remove(Op.STOP);
+
+            try {
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+                if (walRecords > 0 && snapshotSource != null && (stopping || walRecords >= SNAPSHOT_WAL_RECORDS
+                        || System.nanoTime() >= nextSnapshotAt)) {
+                    snapshot();
+                }
+            } catch (IOException e) {
+                System.err.println("Ошибка записи хранилища сессий: " + e.getMessage());
+            }
+
+            if (System.nanoTime() >= nextSnapshotAt) {
+                nextSnapshotAt = System.nanoTime() + snapshotIntervalNanos;
+            }
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Op> batch) throws IOException {
+        buffer.clear();
+        for (Op op : batch) {
+            encode(op.type, op.chatId, op.session);
+        }
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            wal.write(buffer);
+        }
+        wal.force(false);
+
+        walRecords += batch.size();
+        writes.addAndGet(batch.size());
+        commits.incrementAndGet();
+    }
+
+    // Таблица может опережать WAL на ещё не записанные операции из очереди: они лягут в обнулённый WAL
+    // и при восстановлении повторно применятся поверх снимка, не изменив результата
+    private void snapshot() throws IOException {
+        Path temp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(0);
+            int[] count = new int[1];
+            try {
+                snapshotSource.forEach(session -> {
+                    if (buffer.position() >= SNAPSHOT_CHUNK_BYTES) {
+                        flushTo(out);
+                    }
+                    encode(PUT, session.getChatId(), session);
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            flushTo(out);
+            // Число записей известно только после обхода таблицы
+            out.write(ByteBuffer.allocate(4).putInt(0, count[0]), 4);
+            out.force(true);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Если упадём до обнуления, повторное применение WAL поверх снимка ничего не испортит
+        wal.truncate(0);
+        walRecords = 0;
+        snapshots.incrementAndGet();
+    }
+
+    private void flushTo(FileChannel out) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    private void encode(byte type, long chatId, UserSession session) {
+        byte[] city = session != null && session.getCity() != null
+                ? session.getCity().getBytes(StandardCharsets.UTF_8)
+                : null;
+        if (city != null && city.length >= NO_CITY) {
+            city = null;
+        }
+        int length = 1 + 8 + (type == PUT ? 4 + (city != null ? city.length : 0) : 0);
+        ensureCapacity(HEADER_BYTES + length);
+
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(type).putLong(chatId);
+        if (type == PUT) {
+            buffer.put((byte) (session.isActive() ? 1 : 0))
+                    .put(session.getState())
+                    .putShort((short) (city != null ? city.length : NO_CITY));
+            if (city != null) {
+                buffer.put(city);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start + HEADER_BYTES, length);
+        buffer.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    private Map<Long, UserSession> recover() throws IOException {
+        Map<Long, UserSession> sessions = new HashMap<>();
+        // Одинаковые названия городов храним одной строкой
+        Map<String, String> cities = new HashMap<>();
+
+        if (Files.exists(snapshotFile)) {
+            try (FileChannel in = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+                ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                if (data.remaining() < 8 || data.getInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Неверный формат снимка сессий: " + snapshotFile);
+                }
+                int count = data.getInt();
+                for (int i = 0; i < count; i++) {
+                    if (!apply(data, sessions, cities)) {
+                        throw new IOException("Повреждён снимок сессий: " + snapshotFile);
+                    }
+                }
+            }
+        }
+
+        if (Files.exists(walFile)) {
+            long validBytes;
+            try (FileChannel in = FileChannel.open(walFile, StandardOpenOption.READ)) {
+                ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                while (apply(data, sessions, cities)) {
+                    walRecords++;
+                }
+                validBytes = data.position();
+            }
+
+            // Оборванную при падении последнюю пачку отрезаем, чтобы новые записи шли за целыми
+            if (validBytes < Files.size(walFile)) {
+                System.err.printf("WAL сессий: отброшено %d байт повреждённого хвоста%n",
+                        Files.size(walFile) - validBytes);
+                try (FileChannel out = FileChannel.open(walFile, StandardOpenOption.WRITE)) {
+                    out.truncate(validBytes);
+                }
+            }
+        }
+        return sessions;
+    }
+
+    // Читает одну запись и применяет её; false - конец данных или повреждённая запись
+    private boolean apply(ByteBuffer data, Map<Long, UserSession> sessions, Map<String, String> cities) {
+        int start = data.position();
+        if (data.remaining() < HEADER_BYTES) {
+            return false;
+        }
+        int length = data.getInt();
+        int checksum = data.getInt();
+        if (length < 9 || length > MAX_RECORD_BYTES || length > data.remaining()) {
+            data.position(start);
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(data.position(), length));
+        if ((int) crc.getValue() != checksum) {
+            data.position(start);
+            return false;
+        }
+
+        byte type = data.get();
+        long chatId = data.getLong();
+        if (type == PUT) {
+            boolean active = data.get() != 0;
+            byte state = data.get();
+            int cityLength = Short.toUnsignedInt(data.getShort());
+            String city = null;
+            if (cityLength != NO_CITY) {
+                byte[] bytes = new byte[cityLength];
+                data.get(bytes);
+                String decoded = new String(bytes, StandardCharsets.UTF_8);
+                city = cities.computeIfAbsent(decoded, c -> c);
+            }
+            sessions.put(chatId, new UserSession(chatId, active, state, city));
+        } else {
+            sessions.remove(chatId);
+        }
+        return true;
+    }
+
+    public long getWrites() { return writes.get(); }
+    public long getCommits() { return commits.get(); }
+    public long getSnapshots() { return snapshots.get(); }
+    public int getPending() { return queue.size(); }
+    public long getRecoveryMillis() { return recoveryMillis; }
+    public int getRecoveredCount() { return recoveredCount; }
+
+    @Override
+    public String toString() {
+        return String.format("WalSessionStore{recovered=%d in %dms, writes=%d, commits=%d, snapshots=%d, pending=%d}",
+                recoveredCount, recoveryMillis, writes.get(), commits.get(), snapshots.get(), queue.size());
+    }
+}
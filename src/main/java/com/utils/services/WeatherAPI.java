@@ -3,46 +3,210 @@ package com.utils.services;
 import com.utils.models.OpenMeteoResponse;
 import com.utils.models.Coordinates;
 
-import com.google.gson.Gson;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 public class WeatherAPI {
-    private final OkHttpClient client = new OkHttpClient();
-    private final Gson gson = new Gson();
+    private final OkHttpClient client;
     private final Geocoding Geocoding;
+    private final TtlCache<String, OpenMeteoResponse> forecastCache;
+    // Последний полученный прогноз по ячейке живёт дольше основного кэша - запасной ответ,
+    // если свежий не успел загрузиться (см. getLastKnownWeather)
+    private final TtlCache<String, OpenMeteoResponse> lastKnown = new TtlCache<>(DEFAULT_CACHE_SIZE, LAST_KNOWN_TTL);
+    private final double cellSize;
+    private final boolean supersetFetch;
+    private final SingleFlight<String, OpenMeteoResponse> requests = new SingleFlight<>();
+    private volatile ForecastBatcher batcher;
     private static final String API_URL = "https://api.open-meteo.com/v1/forecast";
+    public static final int MAX_FORECAST_DAYS = 7;
+    // 0.1° - около 11 км по широте, в пределах города прогноз практически не отличается
+    private static final double DEFAULT_CELL_SIZE = 0.1;
+    private static final int DEFAULT_CACHE_SIZE = 5000;
+    private static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(15);
+    private static final Duration LAST_KNOWN_TTL = Duration.ofHours(6);
 
     public WeatherAPI(Geocoding Geocoding) {
-        this.Geocoding = Geocoding;
+        this(Geocoding, new TtlCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL), DEFAULT_CELL_SIZE);
     }
 
     public WeatherAPI() {
-        this.Geocoding = new Geocoding();
+        this(new Geocoding());
+    }
+
+    public WeatherAPI(Geocoding Geocoding, TtlCache<String, OpenMeteoResponse> forecastCache, double cellSize) {
+        this(Geocoding, forecastCache, cellSize, true);
+    }
+
+    // supersetFetch: всегда запрашивать прогноз на MAX_FORECAST_DAYS и отдавать из него любой период
+    public WeatherAPI(Geocoding Geocoding, TtlCache<String, OpenMeteoResponse> forecastCache, double cellSize,
+                      boolean supersetFetch) {
+        this(HttpClients.shared(), Geocoding, forecastCache, cellSize, supersetFetch);
+    }
+
+    public WeatherAPI(OkHttpClient client, Geocoding Geocoding) {
+        this(client, Geocoding, new TtlCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL), DEFAULT_CELL_SIZE, true);
+    }
+
+    public WeatherAPI(OkHttpClient client, Geocoding Geocoding, TtlCache<String, OpenMeteoResponse> forecastCache,
+                      double cellSize, boolean supersetFetch) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Размер ячейки должен быть положительным: " + cellSize);
+        }
+        this.client = client;
+        this.Geocoding = Geocoding;
+        this.forecastCache = forecastCache;
+        this.cellSize = cellSize;
+        this.supersetFetch = supersetFetch;
     }
 
     public Geocoding getGeocoding() {
         return Geocoding;
     }
 
+    public TtlCache<String, OpenMeteoResponse> getForecastCache() {
+        return forecastCache;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public SingleFlight<String, OpenMeteoResponse> getRequests() {
+        return requests;
+    }
+
+    public boolean isSupersetFetch() {
+        return supersetFetch;
+    }
+
+    // Промахи кэша копятся window или до maxLocations и уходят одним запросом на несколько координат.
+    // Включается один раз: у прежнего батчера мог остаться поток планировщика и ожидающие запросы
+    public synchronized void enableBatching(Duration window, int maxLocations) {
+        if (batcher != null) {
+            throw new IllegalStateException("Пакетные запросы прогноза уже включены");
+        }
+        batcher = new ForecastBatcher(client, window, maxLocations);
+    }
+
+    public ForecastBatcher getBatcher() {
+        return batcher;
+    }
+
     public OpenMeteoResponse getWeather(double lat, double lon, int days) throws IOException {
-        String url = String.format(
-                "%s?latitude=%.4f&longitude=%.4f&daily=temperature_2m_max,temperature_2m_min,weathercode,precipitation_probability_max,windspeed_10m_max&timezone=auto&forecast_days=%d",
-                API_URL, lat, lon, Math.min(days, 7)
+        ForecastKey forecastKey = new ForecastKey(lat, lon, days);
+
+        OpenMeteoResponse response = forecastCache.get(forecastKey.key);
+        if (response == null) {
+            // Запрашиваем прогноз для центра ячейки, чтобы ответ был одинаковым для всех её пользователей
+            response = requests.execute(forecastKey.key, () -> {
+                OpenMeteoResponse fetched = requestWeather(forecastKey);
+                remember(forecastKey, fetched);
+                return fetched;
+            });
+        }
+
+        return response.firstDays(forecastKey.forecastDays);
+    }
+
+    public CompletableFuture<OpenMeteoResponse> getWeatherAsync(double lat, double lon, int days) {
+        ForecastKey forecastKey = new ForecastKey(lat, lon, days);
+
+        OpenMeteoResponse cached = forecastCache.get(forecastKey.key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.firstDays(forecastKey.forecastDays));
+        }
+
+        return requests.executeAsync(forecastKey.key, () -> fetchAsync(forecastKey)
+                                .thenApply(fetched -> {
+                                    remember(forecastKey, fetched);
+                                    return fetched;
+                                }))
+                .thenApply(response -> response.firstDays(forecastKey.forecastDays));
+    }
+
+    // Прогноз из памяти, даже если его TTL в основном кэше истёк (но не старше LAST_KNOWN_TTL); null, если его нет
+    public OpenMeteoResponse getLastKnownWeather(double lat, double lon, int days) {
+        ForecastKey forecastKey = new ForecastKey(lat, lon, days);
+        OpenMeteoResponse response = lastKnown.get(forecastKey.key);
+        return response != null ? response.firstDays(forecastKey.forecastDays) : null;
+    }
+
+    private void remember(ForecastKey forecastKey, OpenMeteoResponse fetched) {
+        forecastCache.put(forecastKey.key, fetched);
+        lastKnown.put(forecastKey.key, fetched);
+    }
+
+    // Геокодирование и запрос прогноза связаны без блокировки потока
+    public CompletableFuture<OpenMeteoResponse> getWeatherByCityAsync(String cityName, int days) {
+        return Geocoding.getCoordinatesAsync(cityName)
+                .thenCompose(coordinates -> getWeatherAsync(coordinates.getLat(), coordinates.getLon(), days));
+    }
+
+    // Ячейка сетки и горизонт прогноза, под которыми ответ лежит в кэше
+    private class ForecastKey {
+        final int forecastDays;
+        final int fetchDays;
+        final double cellLat;
+        final double cellLon;
+        final String key;
+
+        ForecastKey(double lat, double lon, int days) {
+            forecastDays = Math.min(days, MAX_FORECAST_DAYS);
+            fetchDays = supersetFetch ? MAX_FORECAST_DAYS : forecastDays;
+            long latCell = Math.round(lat / cellSize);
+            long lonCell = Math.round(lon / cellSize);
+            cellLat = latCell * cellSize;
+            cellLon = lonCell * cellSize;
+            key = latCell + ":" + lonCell + ":" + fetchDays;
+        }
+    }
+
+    private CompletableFuture<OpenMeteoResponse> fetchAsync(ForecastKey forecastKey) {
+        ForecastBatcher currentBatcher = batcher;
+        if (currentBatcher != null) {
+            return currentBatcher.submit(forecastKey.cellLat, forecastKey.cellLon, forecastKey.fetchDays);
+        }
+        return AsyncHttp.call(client, buildRequest(forecastKey), this::parseWeather);
+    }
+
+    private OpenMeteoResponse requestWeather(ForecastKey forecastKey) throws IOException {
+        if (batcher != null) {
+            return AsyncHttp.await(fetchAsync(forecastKey));
+        }
+        try (Response response = client.newCall(buildRequest(forecastKey)).execute()) {
+            return parseWeather(response);
+        }
+    }
+
+    private Request buildRequest(ForecastKey forecastKey) {
+        String url = forecastUrl(
+                String.format(Locale.ROOT, "%.4f", forecastKey.cellLat),
+                String.format(Locale.ROOT, "%.4f", forecastKey.cellLon),
+                forecastKey.fetchDays
         );
 
-        Request request = new Request.Builder().url(url).build();
+        return new Request.Builder().url(url).build();
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Ошибка при запросе к API погоды: " + response.code());
-            }
+    static String forecastUrl(String latitudes, String longitudes, int days) {
+        return String.format(
+                Locale.ROOT,
+                "%s?latitude=%s&longitude=%s&daily=temperature_2m_max,temperature_2m_min,weathercode,precipitation_probability_max,windspeed_10m_max&timezone=auto&forecast_days=%d",
+                API_URL, latitudes, longitudes, days
+        );
+    }
 
-            String responseBody = response.body().string();
-            return gson.fromJson(responseBody, OpenMeteoResponse.class);
+    private OpenMeteoResponse parseWeather(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Ошибка при запросе к API погоды: " + response.code());
         }
+
+        return OpenMeteoDecoder.decode(response.body().source());
     }
 
     public OpenMeteoResponse getWeatherByCity(String cityName, int days) throws IOException {
@@ -3,7 +3,26 @@ package com.utils.services;
 import com.utils.interfaces.IDialogLogic;
 import com.utils.models.UserAnswerStatus;
 
+import java.util.concurrent.CompletableFuture;
+
 public class WeatherBotDialogLogic implements IDialogLogic {
+    // Справка не зависит от пользователя - одна строка-константа на всё приложение
+    private static final String HELP = "📖 Помощь по боту:\n\n" +
+            "🌤 Получить погоду:\n" +
+            "  - Нажмите кнопку с периодом (Сегодня, Завтра и т.д.)\n" +
+            "  - Бот покажет погоду для вашего текущего города\n\n" +
+            "📍 Сменить город:\n" +
+            "  - Нажмите \"📍 Сменить город\" или \"🏙 Популярные города\"\n" +
+            "  - Введите название города\n" +
+            "  - Бот запомнит ваш выбор\n\n" +
+            "🔄 Управление сессией:\n" +
+            "  - /start - начать сессию\n" +
+            "  - /quit - завершить сессию\n" +
+            "  - /help - показать справку\n\n" +
+            "❓ Если что-то не работает:\n" +
+            "  - Проверьте правильность написания города\n" +
+            "  - Используйте форматы: \"Москва\" или \"Moscow, Russia\"";
+
     private final WeatherAPI weatherAPI;
     private final WeatherFormatter weatherFormatter;
 
@@ -58,47 +77,23 @@ public class WeatherBotDialogLogic implements IDialogLogic {
     }
 
     public String getHelp() {
-        return "📖 Помощь по боту:\n\n" +
-                "🌤 Получить погоду:\n" +
-                "  - Нажмите кнопку с периодом (Сегодня, Завтра и т.д.)\n" +
-                "  - Бот покажет погоду для вашего текущего города\n\n" +
-                "📍 Сменить город:\n" +
-                "  - Нажмите \"📍 Сменить город\" или \"🏙 Популярные города\"\n" +
-                "  - Введите название города\n" +
-                "  - Бот запомнит ваш выбор\n\n" +
-                "🔄 Управление сессией:\n" +
-                "  - /start - начать сессию\n" +
-                "  - /quit - завершить сессию\n" +
-                "  - /help - показать справку\n\n" +
-                "❓ Если что-то не работает:\n" +
-                "  - Проверьте правильность написания города\n" +
-                "  - Используйте форматы: \"Москва\" или \"Moscow, Russia\"";
+        return HELP;
     }
 
     public String getWeatherForPeriod(String city, int days) {
         try {
-            switch (days) {
-                case 1:
-                    return weatherFormatter.getQuickWeather(city);
-                case 2:
-                    return weatherFormatter.formatTomorrowWeather(city);
-                case 3:
-                    var responseFor3Days = weatherAPI.getWeatherByCity(city, 3);
-                    var coordsFor3Days = weatherAPI.getGeocoding().getCoordinates(city);
-                    return weatherFormatter.formatWeatherResponse(
-                            responseFor3Days, coordsFor3Days.getDisplayName(), 3
-                    );
-                case 7:
-                    var responseFor7Days = weatherAPI.getWeatherByCity(city, 7);
-                    var coordsFor7Days = weatherAPI.getGeocoding().getCoordinates(city);
-                    return weatherFormatter.formatWeatherResponse(
-                            responseFor7Days, coordsFor7Days.getDisplayName(), 7
-                    );
-                default:
-                    return weatherFormatter.getQuickWeather(city);
-            }
+            return weatherFormatter.formatForPeriod(city, days);
         } catch (Exception e) {
             return "❌ Ошибка при получении погоды: " + e.getMessage();
         }
     }
+
+    // Ошибка загрузки приходит исключением в future - вызывающий сам решает, что показать вместо прогноза
+    public CompletableFuture<String> getWeatherForPeriodAsync(String city, int days) {
+        return weatherFormatter.formatForPeriodAsync(city, days);
+    }
+
+    public String getLastKnownWeatherForPeriod(String city, int days) {
+        return weatherFormatter.formatLastKnownForPeriod(city, days);
+    }
 }
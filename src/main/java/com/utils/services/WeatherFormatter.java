@@ -2,8 +2,10 @@ package com.utils.services;
 
 import com.utils.models.OpenMeteoResponse;
 import com.utils.models.Coordinates;
+import com.utils.models.DailyColumns;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
 
 public class WeatherFormatter {
     private final WeatherAPI weatherAPI;
@@ -13,35 +15,22 @@ public class WeatherFormatter {
     }
 
     public String formatWeatherResponse(OpenMeteoResponse response, String location, int days) {
+        DailyColumns daily = response.getDaily().getColumns();
         StringBuilder weatherText = new StringBuilder();
 
         if (days == 1) {
-            double tempMin = response.getDaily().getTemperature2mMin().get(0);
-            double tempMax = response.getDaily().getTemperature2mMax().get(0);
-            String condition = weatherAPI.getWeatherCondition(response.getDaily().getWeatherCode().get(0));
-
-            weatherText.append(String.format("🌤 Погода в %s:\n\n", location))
-                    .append(String.format("🌡 Температура: %.0f°C...%.0f°C\n", tempMin, tempMax))
-                    .append(String.format("%s\n", condition))
-                    .append(String.format("💨 Ветер: %.0f км/ч\n",
-                            response.getDaily().getWindspeed10mMax().get(0)));
-
-            if (response.getDaily().getPrecipitationProbabilityMax() != null) {
-                double precipitation = response.getDaily().getPrecipitationProbabilityMax().get(0);
-                weatherText.append(String.format("☔️ Вероятность дождя: %.0f%%", precipitation));
-            }
+            weatherText.append(String.format("🌤 Погода в %s:\n\n", location));
+            appendDayDetails(weatherText, daily, 0);
 
         } else {
             weatherText.append(String.format("📅 Погода в %s на %d дней:\n\n", location, days));
 
-            for (int i = 0; i < Math.min(days, response.getDaily().getTime().size()); i++) {
-                String dayName = formatDay(response.getDaily().getTime().get(i));
-                double tempMin = response.getDaily().getTemperature2mMin().get(i);
-                double tempMax = response.getDaily().getTemperature2mMax().get(i);
-                String condition = weatherAPI.getWeatherCondition(response.getDaily().getWeatherCode().get(i));
+            for (int i = 0; i < Math.min(days, daily.getDays()); i++) {
+                String dayName = formatDay(daily.getEpochDay(i));
+                String condition = weatherAPI.getWeatherCondition(daily.getWeatherCode(i));
 
                 weatherText.append(String.format("%s: %.0f°C...%.0f°C, %s\n",
-                        dayName, tempMin, tempMax, condition));
+                        dayName, daily.getTemperatureMin(i), daily.getTemperatureMax(i), condition));
             }
         }
 
@@ -49,28 +38,30 @@ public class WeatherFormatter {
     }
 
     public String formatTomorrowWeather(String city) throws Exception {
-        OpenMeteoResponse response = weatherAPI.getTomorrowWeather(city);
-        Coordinates coords = weatherAPI.getGeocoding().getCoordinates(city);
+        return formatTomorrow(weatherAPI.getTomorrowWeather(city), city);
+    }
 
+    private String formatTomorrow(OpenMeteoResponse response, String city) {
         StringBuilder weatherText = new StringBuilder();
         weatherText.append(String.format("📅 Погода в %s на завтра:\n\n", city));
 
         // Берем данные для второго дня (индекс 1)
-        double tempMin = response.getDaily().getTemperature2mMin().get(1);
-        double tempMax = response.getDaily().getTemperature2mMax().get(1);
-        String condition = weatherAPI.getWeatherCondition(response.getDaily().getWeatherCode().get(1));
-        double windSpeed = response.getDaily().getWindspeed10mMax().get(1);
+        appendDayDetails(weatherText, response.getDaily().getColumns(), 1);
+
+        return weatherText.toString();
+    }
 
-        weatherText.append(String.format("🌡 Температура: %.0f°C...%.0f°C\n", tempMin, tempMax))
+    private void appendDayDetails(StringBuilder weatherText, DailyColumns daily, int day) {
+        String condition = weatherAPI.getWeatherCondition(daily.getWeatherCode(day));
+
+        weatherText.append(String.format("🌡 Температура: %.0f°C...%.0f°C\n",
+                        daily.getTemperatureMin(day), daily.getTemperatureMax(day)))
                 .append(String.format("%s\n", condition))
-                .append(String.format("💨 Ветер: %.0f км/ч\n", windSpeed));
+                .append(String.format("💨 Ветер: %.0f км/ч\n", daily.getWindspeedMax(day)));
 
-        if (response.getDaily().getPrecipitationProbabilityMax() != null) {
-            double precipitation = response.getDaily().getPrecipitationProbabilityMax().get(1);
-            weatherText.append(String.format("☔️ Вероятность дождя: %.0f%%", precipitation));
+        if (daily.hasPrecipitationProbabilityMax() && !Float.isNaN(daily.getPrecipitationProbabilityMax(day))) {
+            weatherText.append(String.format("☔️ Вероятность дождя: %.0f%%", daily.getPrecipitationProbabilityMax(day)));
         }
-
-        return weatherText.toString();
     }
 
     public String getQuickWeather(String city) throws Exception {
@@ -79,8 +70,56 @@ public class WeatherFormatter {
         return formatWeatherResponse(response, coords.getDisplayName(), 1);
     }
 
-    private String formatDay(String dateString) {
-        LocalDate date = LocalDate.parse(dateString);
+    // Все периоды читаются из одного закэшированного прогноза на неделю (см. WeatherAPI.isSupersetFetch)
+    public String formatForPeriod(String city, int days) throws Exception {
+        switch (days) {
+            case 2:
+                return formatTomorrowWeather(city);
+            case 3:
+            case 7:
+                OpenMeteoResponse response = weatherAPI.getWeatherByCity(city, days);
+                Coordinates coords = weatherAPI.getGeocoding().getCoordinates(city);
+                return formatWeatherResponse(response, coords.getDisplayName(), days);
+            default:
+                return getQuickWeather(city);
+        }
+    }
+
+    // То же, что formatForPeriod, но без блокировки потока: геокодирование и прогноз связаны цепочкой
+    public CompletableFuture<String> formatForPeriodAsync(String city, int days) {
+        return weatherAPI.getGeocoding().getCoordinatesAsync(city)
+                .thenCompose(coords -> weatherAPI.getWeatherAsync(coords.getLat(), coords.getLon(), forecastDays(days))
+                        .thenApply(response -> formatPeriod(response, city, coords, days)));
+    }
+
+    // Последний известный прогноз без обращения к сети; null, если города или прогноза нет в памяти
+    public String formatLastKnownForPeriod(String city, int days) {
+        Coordinates coords = weatherAPI.getGeocoding().getCachedCoordinates(city);
+        if (coords == null) {
+            return null;
+        }
+        OpenMeteoResponse response = weatherAPI.getLastKnownWeather(coords.getLat(), coords.getLon(), forecastDays(days));
+        return response != null ? formatPeriod(response, city, coords, days) : null;
+    }
+
+    private static int forecastDays(int days) {
+        return days == 2 || days == 3 || days == 7 ? days : 1;
+    }
+
+    private String formatPeriod(OpenMeteoResponse response, String city, Coordinates coords, int days) {
+        switch (days) {
+            case 2:
+                return formatTomorrow(response, city);
+            case 3:
+            case 7:
+                return formatWeatherResponse(response, coords.getDisplayName(), days);
+            default:
+                return formatWeatherResponse(response, coords.getDisplayName(), 1);
+        }
+    }
+
+    private String formatDay(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
         LocalDate today = LocalDate.now();
 
         if (date.equals(today)) return "Сегодня";
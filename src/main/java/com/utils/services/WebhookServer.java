@@ -0,0 +1,99 @@
+package com.utils.services;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Приём обновлений от Telegram через webhook на встроенном HTTP-сервере JDK.
+// Обновление разбирается, Telegram сразу получает 200, а обработка уходит в handler
+// (у бота - onUpdatesReceived, который раскладывает обновления по почтовым ящикам чатов).
+public class WebhookServer implements AutoCloseable {
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String secretToken;
+    private final Consumer<List<Update>> handler;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // secretToken может быть null - тогда заголовок X-Telegram-Bot-Api-Secret-Token не проверяется
+    public WebhookServer(InetSocketAddress address, String path, String secretToken,
+                         Consumer<List<Update>> handler) throws IOException {
+        this.secretToken = secretToken;
+        this.handler = handler;
+        this.server = HttpServer.create(address, 0);
+        server.createContext(path, this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                reject(exchange, 405);
+                return;
+            }
+            if (secretToken != null && !secretToken.equals(exchange.getRequestHeaders().getFirst(SECRET_HEADER))) {
+                reject(exchange, 401);
+                return;
+            }
+
+            Update update;
+            try (InputStream body = exchange.getRequestBody()) {
+                update = MAPPER.readValue(body, Update.class);
+            } catch (IOException e) {
+                reject(exchange, 400);
+                return;
+            }
+
+            // Подтверждаем до обработки: Telegram не ждёт ответа бота и не повторяет доставку
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+
+            received.incrementAndGet();
+            handler.accept(List.of(update));
+        }
+    }
+
+    private void reject(HttpExchange exchange, int status) throws IOException {
+        rejected.incrementAndGet();
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    public long getReceived() { return received.get(); }
+    public long getRejected() { return rejected.get(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WebhookServer{port=%d, received=%d, rejected=%d}",
+                getPort(), received.get(), rejected.get());
+    }
+}
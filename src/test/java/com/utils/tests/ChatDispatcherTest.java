@@ -0,0 +1,232 @@
+package com.utils.tests;
+
+import com.utils.services.AdmissionPolicy;
+import com.utils.services.ChatDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatDispatcherTest {
+
+    private final ChatDispatcher dispatcher = new ChatDispatcher();
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.close();
+    }
+
+    private void awaitCompleted(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getCompleted() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, dispatcher.getCompleted());
+    }
+
+    @Test
+    void dispatch_SameChat_ShouldRunInOrderWithoutOverlap() throws Exception {
+        List<Integer> order = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+
+        for (int i = 0; i < 1_000; i++) {
+            int value = i;
+            dispatcher.dispatch(42, () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                order.add(value);
+                running.decrementAndGet();
+            });
+        }
+        awaitCompleted(1_000);
+
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    void dispatch_SlowChat_ShouldNotBlockOtherChats() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+
+        dispatcher.dispatch(1, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(2, otherDone::countDown);
+
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        awaitCompleted(2);
+    }
+
+    @Test
+    void dispatch_ManyChats_ShouldRunConcurrentlyAndReleaseMailboxes() throws Exception {
+        int chats = 10_000;
+        CountDownLatch allStarted = new CountDownLatch(chats);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<Long, Integer> counts = new ConcurrentHashMap<>();
+
+        for (long chat = 0; chat < chats; chat++) {
+            long chatId = chat;
+            dispatcher.dispatch(chatId, () -> {
+                allStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                counts.merge(chatId, 1, Integer::sum);
+            });
+        }
+
+        // Все чаты одновременно заблокированы - это возможно только на виртуальных потоках
+        assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        awaitCompleted(chats);
+
+        assertEquals(chats, counts.size());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getActiveChats() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, dispatcher.getActiveChats());
+    }
+
+    @Test
+    void dispatch_FailingTask_ShouldNotStopMailbox() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+
+        dispatcher.dispatch(7, () -> {
+            throw new IllegalStateException("сбой");
+        });
+        dispatcher.dispatch(7, done::incrementAndGet);
+        awaitCompleted(2);
+
+        assertEquals(1, done.get());
+        assertEquals(1, dispatcher.getFailed());
+    }
+
+    // Занимает чат задачей, которая ждёт release; возвращается, когда задача уже выполняется
+    private void occupy(long chatId, CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        dispatcher.dispatch(chatId, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void dispatch_FullQueue_RejectNewest_ShouldShedIncomingTask() throws Exception {
+        dispatcher.enableAdmissionControl(2, Duration.ofMinutes(1), AdmissionPolicy.REJECT_NEWEST);
+        CountDownLatch release = new CountDownLatch(1);
+        occupy(1, release);
+        AtomicInteger shed = new AtomicInteger();
+
+        assertTrue(dispatcher.dispatch(1, () -> { }, shed::incrementAndGet));
+        assertTrue(dispatcher.dispatch(1, () -> { }, shed::incrementAndGet));
+        assertEquals(2, dispatcher.getPending());
+        assertFalse(dispatcher.dispatch(1, () -> { }, shed::incrementAndGet));
+
+        assertEquals(1, shed.get());
+        assertEquals(1, dispatcher.getRejected());
+        release.countDown();
+        awaitCompleted(3);
+        assertEquals(0, dispatcher.getPending());
+    }
+
+    @Test
+    void dispatch_FullQueue_DropOldestPerChat_ShouldKeepLatestTasks() throws Exception {
+        dispatcher.enableAdmissionControl(2, Duration.ofMinutes(1), AdmissionPolicy.DROP_OLDEST_PER_CHAT);
+        CountDownLatch release = new CountDownLatch(1);
+        occupy(1, release);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        List<String> shed = Collections.synchronizedList(new ArrayList<>());
+
+        for (String name : List.of("A", "B", "C")) {
+            assertTrue(dispatcher.dispatch(1, () -> ran.add(name), () -> shed.add(name)));
+        }
+        // У чата 3 нет ожидающих задач - уступить место нечем
+        assertFalse(dispatcher.dispatch(3, () -> ran.add("D"), () -> shed.add("D")));
+
+        release.countDown();
+        awaitCompleted(3);
+        assertEquals(List.of("B", "C"), ran);
+        assertEquals(List.of("A", "D"), shed);
+        assertEquals(1, dispatcher.getDroppedOldest());
+        assertEquals(2, dispatcher.getShed());
+    }
+
+    @Test
+    void dispatch_WaitAboveLatencyTarget_ShouldShedBeforeQueueIsFull() throws Exception {
+        dispatcher.enableAdmissionControl(1_000, Duration.ofMillis(100), AdmissionPolicy.REJECT_NEWEST);
+        AtomicInteger admittedWhileOverloaded = new AtomicInteger(-1);
+
+        dispatcher.dispatch(1, () -> sleep(300));
+        dispatcher.dispatch(1, () -> sleep(150));
+        // Третья задача прождала ~450 мс, и ожидание выше цели держится дольше 100 мс - это перегрузка
+        dispatcher.dispatch(1, () -> admittedWhileOverloaded.set(dispatcher.dispatch(2, () -> { }) ? 1 : 0));
+        awaitCompleted(3);
+
+        assertEquals(0, admittedWhileOverloaded.get());
+        assertEquals(1, dispatcher.getRejected());
+        assertTrue(dispatcher.getQueueWait().getMaxMillis() >= 400);
+
+        // Признак перегрузки истекает сам, и новые задачи снова принимаются
+        Thread.sleep(200);
+        assertFalse(dispatcher.isOverloaded());
+        assertTrue(dispatcher.dispatch(3, () -> { }));
+        awaitCompleted(4);
+    }
+
+    @Test
+    void limitConcurrency_ShouldCapRunningTasksAcrossChats() throws Exception {
+        dispatcher.limitConcurrency(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (long chatId = 0; chatId < 8; chatId++) {
+            dispatcher.dispatch(chatId, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(30);
+                running.decrementAndGet();
+            });
+        }
+        awaitCompleted(8);
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(8, dispatcher.getLatency().getCount());
+        // Последние задачи ждали, пока освободятся разрешения
+        assertTrue(dispatcher.getQueueWait().getMaxMillis() >= 60);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
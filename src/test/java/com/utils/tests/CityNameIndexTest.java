@@ -0,0 +1,104 @@
+package com.utils.tests;
+
+import com.utils.services.CityNameIndex;
+import com.utils.services.Gazetteer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CityNameIndexTest {
+
+    private static CityNameIndex index;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        index = CityNameIndex.fromGazetteer(Gazetteer.loadBundled());
+    }
+
+    @Test
+    void resolve_OneTypo_ShouldReturnCity() {
+        CityNameIndex.Match match = index.resolve("Масква");
+
+        assertNotNull(match);
+        assertEquals("Москва", match.getLabel());
+        assertEquals(1, match.getDistance());
+    }
+
+    @Test
+    void resolve_LatinAlias_ShouldReturnRussianLabel() {
+        assertEquals("Екатеринбург", index.resolve("Ekaterinburg").getLabel());
+        assertEquals("Екатеринбург", index.resolve("Ekaterinbourg").getLabel());
+    }
+
+    @Test
+    void resolve_TwoTypos_ShouldNotAutoCorrect() {
+        assertNull(index.resolve("Навасибирк"));
+        assertEquals("Новосибирск", index.suggest("Навасибирк", 3).getFirst().getLabel());
+    }
+
+    @Test
+    void resolve_AmbiguousInput_ShouldReturnNull() {
+        CityNameIndex ambiguous = new CityNameIndex(Map.of("омск", "Омск", "томск", "Томск"));
+
+        assertNull(ambiguous.resolve("Тмск"));
+        assertEquals(List.of("Омск", "Томск"),
+                ambiguous.suggest("Тмск", 3).stream().map(CityNameIndex.Match::getLabel).toList());
+    }
+
+    @Test
+    void suggest_UnrelatedInput_ShouldReturnEmpty() {
+        assertTrue(index.suggest("Урюпинск", 3).isEmpty());
+        assertTrue(index.suggest("   ", 3).isEmpty());
+    }
+
+    @Test
+    void suggest_ShouldReturnOneMatchPerCity() {
+        List<CityNameIndex.Match> matches = index.suggest("Питербург", 3);
+
+        assertEquals("Санкт-Петербург", matches.getFirst().getLabel());
+        assertEquals(matches.size(), matches.stream().map(CityNameIndex.Match::getLabel).distinct().count());
+    }
+
+    @Test
+    void suggest_LargeIndex_ShouldAnswerInMicroseconds() {
+        Map<String, String> names = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            names.put("город" + i, "Город " + i);
+        }
+        names.put("москва", "Москва");
+        CityNameIndex large = new CityNameIndex(names);
+
+        for (int i = 0; i < 1_000; i++) {
+            large.suggest("масква", 3);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("Москва", large.suggest("масква", 3).getFirst().getLabel());
+        }
+        long micros = (System.nanoTime() - start) / 1_000 / 1_000;
+
+        System.out.printf("CityNameIndex: %d названий, %d мкс на поиск%n", large.size(), micros);
+        assertTrue(micros < 1_000);
+    }
+
+    @Test
+    void startingWith_ShouldCompletePrefixShortestFirst() {
+        List<String> labels = index.startingWith("  СА", 5).stream().map(CityNameIndex.Match::getLabel).toList();
+        assertEquals(List.of("Самара", "Саратов", "Санкт-Петербург"), labels);
+
+        // Синоним и полное название одного города дают один результат
+        List<CityNameIndex.Match> matches = index.startingWith("нижн", 5);
+        assertEquals(1, matches.size());
+        assertEquals("Нижний Новгород", matches.getFirst().getLabel());
+        assertEquals("нижний", matches.getFirst().getName());
+
+        assertTrue(index.startingWith("щщ", 5).isEmpty());
+        assertTrue(index.startingWith(" ", 5).isEmpty());
+    }
+}
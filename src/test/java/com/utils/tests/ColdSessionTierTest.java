@@ -0,0 +1,75 @@
+package com.utils.tests;
+
+import com.utils.models.UserSession;
+import com.utils.services.ColdSessionTier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColdSessionTierTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void put_AfterReopen_ShouldReturnSameSessions() throws IOException {
+        Path file = tempDir.resolve("cold.bin");
+        try (ColdSessionTier tier = new ColdSessionTier(file)) {
+            // Больше начальной ёмкости, чтобы проверить перестройку файла
+            for (long id = 1; id <= 5_000; id++) {
+                tier.put(new UserSession(id * 7919, id % 2 == 0, (byte) (id % 3), id % 5 == 0 ? null : "Город " + id));
+            }
+            tier.put(new UserSession(7919, true, (byte) 1, "Санкт-Петербург"));
+        }
+
+        try (ColdSessionTier tier = new ColdSessionTier(file)) {
+            assertEquals(5_000, tier.size());
+            assertEquals(new UserSession(7919, true, (byte) 1, "Санкт-Петербург"), tier.get(7919));
+            assertEquals(new UserSession(10 * 7919, true, (byte) 1, null), tier.get(10 * 7919));
+            assertEquals("Город 4999", tier.get(4999L * 7919).getCity());
+            assertNull(tier.get(42));
+        }
+    }
+
+    @Test
+    void remove_ShouldKeepOtherSessionsReachable() throws IOException {
+        Path file = tempDir.resolve("cold.bin");
+        try (ColdSessionTier tier = new ColdSessionTier(file)) {
+            // Почти заполненная таблица: длинные цепочки пробирования, удаление сдвигает соседей
+            for (long id = 1; id <= 700; id++) {
+                tier.put(new UserSession(id, true, (byte) 0, "Город " + id));
+            }
+            for (long id = 1; id <= 700; id += 2) {
+                assertTrue(tier.remove(id));
+            }
+            assertFalse(tier.remove(1));
+            assertEquals(350, tier.size());
+        }
+
+        try (ColdSessionTier tier = new ColdSessionTier(file)) {
+            assertEquals(350, tier.size());
+            for (long id = 1; id <= 700; id++) {
+                if (id % 2 == 0) {
+                    assertEquals("Город " + id, tier.get(id).getCity());
+                } else {
+                    assertNull(tier.get(id));
+                }
+            }
+        }
+    }
+
+    @Test
+    void fits_TooLongCity_ShouldBeRejected() throws IOException {
+        UserSession longCity = new UserSession(1, true, (byte) 0, "ы".repeat(ColdSessionTier.MAX_CITY_BYTES));
+
+        assertFalse(ColdSessionTier.fits(longCity));
+        assertTrue(ColdSessionTier.fits(new UserSession(1, true, (byte) 0, null)));
+        try (ColdSessionTier tier = new ColdSessionTier(tempDir.resolve("cold.bin"))) {
+            assertThrows(IllegalArgumentException.class, () -> tier.put(longCity));
+        }
+    }
+}
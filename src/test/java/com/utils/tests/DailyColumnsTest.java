@@ -0,0 +1,82 @@
+package com.utils.tests;
+
+import com.utils.models.Daily;
+import com.utils.models.DailyColumns;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DailyColumnsTest {
+
+    private DailyColumns createColumns(float[] temperatureMax) {
+        int today = (int) LocalDate.of(2025, 10, 1).toEpochDay();
+        return new DailyColumns(
+                new int[]{today, today + 1, today + 2},
+                temperatureMax,
+                new float[]{10.5f, 11f, 12f},
+                new byte[]{0, 61, 95},
+                new float[]{15f, 16f, 17f},
+                null
+        );
+    }
+
+    @Test
+    void constructor_ShouldCopyArrays() {
+        float[] temperatureMax = {20.5f, 21f, 22f};
+        DailyColumns columns = createColumns(temperatureMax);
+
+        temperatureMax[0] = -50f;
+
+        assertEquals(20.5f, columns.getTemperatureMax(0));
+    }
+
+    @Test
+    void firstDays_ShouldLimitEveryColumn() {
+        DailyColumns columns = createColumns(new float[]{20.5f, 21f, 22f}).firstDays(2);
+
+        assertEquals(2, columns.getDays());
+        assertEquals(2, columns.getWeatherCodesLength());
+        assertEquals(61, columns.getWeatherCode(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> columns.getTemperatureMax(2));
+    }
+
+    @Test
+    void missingColumn_ShouldBeReportedAsAbsent() {
+        DailyColumns columns = createColumns(new float[]{20.5f, 21f, 22f});
+
+        assertFalse(columns.hasPrecipitationProbabilityMax());
+        assertEquals(0, columns.getPrecipitationProbabilityMaxLength());
+    }
+
+    @Test
+    void dailyAdapter_ShouldExposeColumnsAsLists() {
+        Daily daily = new Daily(createColumns(new float[]{20.5f, 21f, 22f}));
+
+        assertEquals(Arrays.asList("2025-10-01", "2025-10-02", "2025-10-03"), daily.getTime());
+        assertEquals(Arrays.asList(0, 61, 95), daily.getWeatherCode());
+        assertEquals(20.5, daily.getTemperature2mMax().get(0));
+        assertNull(daily.getPrecipitationProbabilityMax());
+        assertThrows(UnsupportedOperationException.class, () -> daily.getTemperature2mMax().add(1.0));
+    }
+
+    @Test
+    void dailyAdapter_ShouldReturnDecimalValuesWithoutFloatNoise() {
+        Daily daily = new Daily();
+        daily.setTemperature2mMax(Arrays.asList(20.3, -7.1));
+        daily.setWindspeed10mMax(Arrays.asList(12.7, 0.1));
+
+        assertEquals(Arrays.asList(20.3, -7.1), daily.getTemperature2mMax());
+        assertEquals(Arrays.asList(12.7, 0.1), daily.getWindspeed10mMax());
+    }
+
+    @Test
+    void estimatedBytes_ShouldCountPrimitiveStorage() {
+        DailyColumns columns = createColumns(new float[]{20.5f, 21f, 22f});
+
+        // 3 дня: даты, 3 float-колонки по 4 байта и коды по 1 байту
+        assertEquals(3 * 4 + 3 * 4 * 3 + 3, columns.estimatedBytes());
+    }
+}
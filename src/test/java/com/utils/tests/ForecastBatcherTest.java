@@ -0,0 +1,138 @@
+package com.utils.tests;
+
+import com.utils.models.OpenMeteoResponse;
+import com.utils.services.ForecastBatcher;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ForecastBatcherTest {
+
+    private static final String TWO_LOCATIONS_JSON = """
+            [
+                {"latitude": 55.8, "daily": {"time": ["2023-10-01"], "temperature_2m_max": [20.5]}},
+                {"latitude": 59.9, "daily": {"time": ["2023-10-01"], "temperature_2m_max": [15.0]}}
+            ]
+            """;
+
+    @Mock
+    private OkHttpClient mockClient;
+
+    @Mock
+    private Call mockCall;
+
+    @Mock
+    private Response mockResponse;
+
+    @Mock
+    private ResponseBody mockResponseBody;
+
+    private ForecastBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    private void stubResponse(String json) {
+        when(mockClient.newCall(any(Request.class))).thenReturn(mockCall);
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponse.body()).thenReturn(mockResponseBody);
+        when(mockResponseBody.source()).thenAnswer(invocation -> new Buffer().writeUtf8(json));
+        doAnswer(invocation -> {
+            Callback callback = invocation.getArgument(0);
+            callback.onResponse(mockCall, mockResponse);
+            return null;
+        }).when(mockCall).enqueue(any(Callback.class));
+    }
+
+    @Test
+    void submit_WithinWindow_ShouldSendOneMultiLocationRequest() throws Exception {
+        stubResponse(TWO_LOCATIONS_JSON);
+        batcher = new ForecastBatcher(mockClient, Duration.ofMillis(50), 10);
+
+        CompletableFuture<OpenMeteoResponse> moscow = batcher.submit(55.8, 37.6, 7);
+        CompletableFuture<OpenMeteoResponse> petersburg = batcher.submit(59.9, 30.3, 7);
+
+        assertEquals(20.5, moscow.get(5, TimeUnit.SECONDS).getDaily().getTemperature2mMax().get(0));
+        assertEquals(15.0, petersburg.get(5, TimeUnit.SECONDS).getDaily().getTemperature2mMax().get(0));
+
+        ArgumentCaptor<Request> captor = ArgumentCaptor.forClass(Request.class);
+        verify(mockClient, times(1)).newCall(captor.capture());
+        String url = captor.getValue().url().toString();
+        assertTrue(url.contains("latitude=55.8000,59.9000"));
+        assertTrue(url.contains("longitude=37.6000,30.3000"));
+        assertEquals(1, batcher.getBatches());
+        assertEquals(2, batcher.getLocations());
+    }
+
+    @Test
+    void submit_ReachingMaxLocations_ShouldFlushWithoutWaitingForWindow() throws Exception {
+        stubResponse(TWO_LOCATIONS_JSON);
+        batcher = new ForecastBatcher(mockClient, Duration.ofHours(1), 2);
+
+        CompletableFuture<OpenMeteoResponse> moscow = batcher.submit(55.8, 37.6, 7);
+        CompletableFuture<OpenMeteoResponse> petersburg = batcher.submit(59.9, 30.3, 7);
+
+        assertNotNull(moscow.get(5, TimeUnit.SECONDS));
+        assertNotNull(petersburg.get(5, TimeUnit.SECONDS));
+        assertEquals(0, batcher.getPending());
+    }
+
+    @Test
+    void submit_AfterSizeTriggeredFlush_NextBatchShouldGetFullWindow() throws Exception {
+        stubResponse(TWO_LOCATIONS_JSON);
+        batcher = new ForecastBatcher(mockClient, Duration.ofMillis(200), 2);
+
+        CompletableFuture<OpenMeteoResponse> moscow = batcher.submit(55.8, 37.6, 7);
+        Thread.sleep(100);
+        batcher.submit(59.9, 30.3, 7);
+        moscow.get(5, TimeUnit.SECONDS);
+
+        // Таймер первой пачки сработал бы через ~100 мс и отправил бы новую пачку раньше её окна
+        CompletableFuture<OpenMeteoResponse> kazan = batcher.submit(55.8, 49.1, 7);
+        Thread.sleep(150);
+        assertFalse(kazan.isDone());
+        assertEquals(1, batcher.getBatches());
+
+        assertThrows(Exception.class, () -> kazan.get(5, TimeUnit.SECONDS));
+        assertEquals(2, batcher.getBatches());
+    }
+
+    @Test
+    void submit_WhenResponseCountDiffers_ShouldFailAllCallers() {
+        stubResponse("{\"daily\": {\"time\": [\"2023-10-01\"]}}");
+        batcher = new ForecastBatcher(mockClient, Duration.ofMillis(10), 10);
+
+        CompletableFuture<OpenMeteoResponse> moscow = batcher.submit(55.8, 37.6, 7);
+        CompletableFuture<OpenMeteoResponse> petersburg = batcher.submit(59.9, 30.3, 7);
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> moscow.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertThrows(ExecutionException.class, () -> petersburg.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,174 @@
+package com.utils.tests;
+
+import com.utils.models.Coordinates;
+import com.utils.services.Gazetteer;
+import com.utils.services.Geocoding;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class GazetteerTest {
+
+    @Mock
+    private OkHttpClient mockClient;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void loadBundled_ShouldContainKeyboardCities() throws IOException {
+        Gazetteer gazetteer = Gazetteer.loadBundled();
+
+        for (String city : List.of("Москва", "Санкт-Петербург", "Новосибирск", "Екатеринбург",
+                "Казань", "Нижний Новгород", "Сочи", "Владивосток")) {
+            assertNotNull(gazetteer.lookup(city), city);
+        }
+    }
+
+    @Test
+    void lookup_AliasAndSpacing_ShouldResolveToSamePlace() throws IOException {
+        Gazetteer gazetteer = Gazetteer.loadBundled();
+
+        Coordinates spb = gazetteer.lookup("СПб");
+        Coordinates piter = gazetteer.lookup("  питер ");
+
+        assertEquals("Санкт-Петербург, Россия", spb.getDisplayName());
+        assertEquals(spb.getLat(), piter.getLat());
+        assertEquals(59.9386, spb.getLat(), 1e-4);
+        assertEquals(30.3141, spb.getLon(), 1e-4);
+    }
+
+    @Test
+    void lookup_UnknownCity_ShouldReturnNull() throws IOException {
+        assertNull(Gazetteer.loadBundled().lookup("Урюпинск"));
+    }
+
+    @Test
+    void builder_DuplicateAlias_ShouldKeepFirstPlace() throws IOException {
+        ByteBuffer data = new Gazetteer.Builder()
+                .readTsv(new StringReader("1.0\t2.0\tПервый\tГород|Общий\n3.0\t4.0\tВторой\tОбщий|Другой\n"))
+                .build();
+        Gazetteer gazetteer = Gazetteer.fromBuffer(data);
+
+        assertEquals(2, gazetteer.getPlaceCount());
+        assertEquals(3, gazetteer.getNameCount());
+        assertEquals("Первый", gazetteer.lookup("общий").getDisplayName());
+        assertEquals("Второй", gazetteer.lookup("Другой").getDisplayName());
+    }
+
+    @Test
+    void open_LargeMappedFile_ShouldLoadQuickly() throws IOException {
+        Gazetteer.Builder builder = new Gazetteer.Builder();
+        for (int i = 0; i < 100_000; i++) {
+            builder.add(i % 90, i % 180, "Город " + i + ", Россия", List.of("город" + i, "gorod" + i));
+        }
+        Path file = tempDir.resolve("gazetteer.bin");
+        builder.writeTo(file);
+
+        long heapBefore = usedHeap();
+        Gazetteer gazetteer = Gazetteer.open(file);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000; i += 7) {
+            assertNotNull(gazetteer.lookup("Город" + i));
+        }
+        long lookupMicros = (System.nanoTime() - start) / 1000;
+
+        System.out.printf("%s, %d КБ на диске, ~%d КБ кучи, %d мкс на %d поисков%n",
+                gazetteer, Files.size(file) / 1024, Math.max(0, usedHeap() - heapBefore) / 1024,
+                lookupMicros, 100_000 / 7 + 1);
+
+        assertEquals(100_000, gazetteer.getPlaceCount());
+        assertEquals(200_000, gazetteer.getNameCount());
+        assertEquals("Город 4242, Россия", gazetteer.lookup("gorod4242").getDisplayName());
+        assertTrue(gazetteer.getLoadMillis() < 1000);
+    }
+
+    @Test
+    void open_WrongFormat_ShouldThrow() throws IOException {
+        Path file = tempDir.resolve("broken.bin");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IOException.class, () -> Gazetteer.open(file));
+    }
+
+    @Test
+    void openOrCompile_MissingFile_ShouldBuildFromBundledResource() throws IOException {
+        Path file = tempDir.resolve("cities.bin");
+
+        Gazetteer gazetteer = Gazetteer.openOrCompile(file);
+
+        assertTrue(Files.exists(file));
+        assertNotNull(gazetteer.lookup("Москва"));
+    }
+
+    @Test
+    void openOrCompile_StaleFile_ShouldRebuildFromBundledResource() throws IOException {
+        Path file = tempDir.resolve("cities.bin");
+        new Gazetteer.Builder()
+                .add(1.0, 2.0, "Старый город", List.of("Москва"))
+                .writeTo(file);
+
+        Gazetteer gazetteer = Gazetteer.openOrCompile(file);
+
+        assertEquals(Gazetteer.loadBundled().getSourceHash(), gazetteer.getSourceHash());
+        assertEquals(Gazetteer.loadBundled().getPlaceCount(), gazetteer.getPlaceCount());
+        assertNotEquals("Старый город", gazetteer.lookup("Москва").getDisplayName());
+        assertNotNull(gazetteer.lookup("Казань"));
+    }
+
+    @Test
+    void openOrCompile_OldFormatFile_ShouldRebuild() throws IOException {
+        Path file = tempDir.resolve("cities.bin");
+        Files.write(file, new byte[64]);
+
+        Gazetteer gazetteer = Gazetteer.openOrCompile(file);
+
+        assertNotNull(gazetteer.lookup("Москва"));
+    }
+
+    @Test
+    void openOrCompile_UpToDateFile_ShouldNotRewrite() throws IOException {
+        Path file = tempDir.resolve("cities.bin");
+        Gazetteer.openOrCompile(file);
+        FileTime written = Files.getLastModifiedTime(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(written.toMillis() - 60_000));
+
+        Gazetteer.openOrCompile(file);
+
+        assertEquals(written.toMillis() - 60_000, Files.getLastModifiedTime(file).toMillis());
+    }
+
+    @Test
+    void geocoding_GazetteerHit_ShouldNotCallNominatim() throws IOException {
+        Geocoding geocoding = new Geocoding(mockClient);
+        geocoding.useGazetteer(Gazetteer.loadBundled());
+
+        Coordinates coordinates = geocoding.getCoordinates("Казань");
+        Coordinates async = geocoding.getCoordinatesAsync("kazan").join();
+
+        assertEquals("Казань, Россия", coordinates.getDisplayName());
+        assertEquals(coordinates.getLat(), async.getLat());
+        assertEquals(0, geocoding.getCache().size());
+        verifyNoInteractions(mockClient);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
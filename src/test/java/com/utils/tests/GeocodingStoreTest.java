@@ -0,0 +1,164 @@
+package com.utils.tests;
+
+import com.utils.models.Coordinates;
+import com.utils.services.Geocoding;
+import com.utils.services.GeocodingStore;
+import com.utils.services.TtlCache;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class GeocodingStoreTest {
+
+    @Mock
+    private OkHttpClient mockClient;
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private GeocodingStore newStore(Path file) {
+        return new GeocodingStore(file, Duration.ofDays(30), now::get);
+    }
+
+    private TtlCache<String, Coordinates> load(GeocodingStore store) throws Exception {
+        TtlCache<String, Coordinates> cache = new TtlCache<>(100, Duration.ofHours(1));
+        store.loadInto(cache).get(5, TimeUnit.SECONDS);
+        return cache;
+    }
+
+    @Test
+    void loadInto_AfterRestart_ShouldRestoreLatestRecord() throws Exception {
+        Path file = tempDir.resolve("geocoding.log");
+        try (GeocodingStore store = newStore(file)) {
+            store.append("тверь", new Coordinates(1, 1, "Старое имя"));
+            store.append("тверь", new Coordinates(56.8587, 35.9176, "Тверь, Россия"));
+        }
+
+        TtlCache<String, Coordinates> cache = load(newStore(file));
+
+        assertEquals(1, cache.size());
+        assertEquals("Тверь, Россия", cache.get("тверь").getDisplayName());
+        assertEquals(56.8587, cache.get("тверь").getLat(), 1e-9);
+    }
+
+    @Test
+    void loadInto_ExpiredRecords_ShouldBeSkipped() throws Exception {
+        Path file = tempDir.resolve("geocoding.log");
+        try (GeocodingStore store = newStore(file)) {
+            store.append("тверь", new Coordinates(56.8587, 35.9176, "Тверь, Россия"));
+        }
+
+        now.addAndGet(Duration.ofDays(31).toMillis());
+
+        assertEquals(0, load(newStore(file)).size());
+    }
+
+    @Test
+    void loadInto_TornTail_ShouldKeepValidRecordsAndTruncate() throws Exception {
+        Path file = tempDir.resolve("geocoding.log");
+        try (GeocodingStore store = newStore(file)) {
+            store.append("тверь", new Coordinates(56.8587, 35.9176, "Тверь, Россия"));
+            store.append("псков", new Coordinates(57.8194, 28.3318, "Псков, Россия"));
+        }
+        long intact = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(intact - 5);
+        }
+
+        GeocodingStore reopened = newStore(file);
+        TtlCache<String, Coordinates> cache = load(reopened);
+
+        assertNotNull(cache.get("тверь"));
+        assertNull(cache.get("псков"));
+        assertEquals(1, reopened.getCompactions());
+        assertTrue(Files.size(file) < intact);
+    }
+
+    @Test
+    void loadInto_ManyOverwrites_ShouldCompact() throws Exception {
+        Path file = tempDir.resolve("geocoding.log");
+        try (GeocodingStore store = newStore(file)) {
+            for (int i = 0; i < 200; i++) {
+                store.append("тверь", new Coordinates(56.8587, 35.9176, "Тверь " + i));
+            }
+        }
+        long before = Files.size(file);
+
+        GeocodingStore reopened = newStore(file);
+        assertEquals("Тверь 199", load(reopened).get("тверь").getDisplayName());
+
+        assertEquals(1, reopened.getCompactions());
+        assertTrue(Files.size(file) * 100 < before);
+        assertEquals("Тверь 199", load(newStore(file)).get("тверь").getDisplayName());
+    }
+
+    @Test
+    void geocoding_WarmRestart_ShouldNotCallNominatim() throws Exception {
+        Path file = tempDir.resolve("geocoding.log");
+        try (GeocodingStore store = newStore(file)) {
+            store.append("тверь", new Coordinates(56.8587, 35.9176, "Тверь, Россия"));
+        }
+
+        Geocoding geocoding = new Geocoding(mockClient);
+        geocoding.useStore(newStore(file));
+
+        assertEquals("Тверь, Россия", geocoding.getCoordinates("  Тверь ").getDisplayName());
+        assertEquals("Тверь, Россия", geocoding.getCoordinatesAsync("ТВЕРЬ").get(5, TimeUnit.SECONDS).getDisplayName());
+        verifyNoInteractions(mockClient);
+    }
+
+    @Test
+    void geocoding_StoreLargerThanCache_ShouldReadThroughWithoutNominatim() throws Exception {
+        Path file = tempDir.resolve("geocoding.log");
+        try (GeocodingStore store = newStore(file)) {
+            store.append("тверь", new Coordinates(56.8587, 35.9176, "Тверь, Россия"));
+            store.append("псков", new Coordinates(57.8194, 28.3318, "Псков, Россия"));
+            store.append("орск", new Coordinates(51.2293, 58.4752, "Орск, Россия"));
+        }
+
+        GeocodingStore store = newStore(file);
+        Geocoding geocoding = new Geocoding(mockClient, new TtlCache<>(1, Duration.ofHours(1)));
+        geocoding.useStore(store).get(5, TimeUnit.SECONDS);
+
+        assertEquals("Тверь, Россия", geocoding.getCoordinates("Тверь").getDisplayName());
+        assertEquals("Псков, Россия", geocoding.getCoordinates("Псков").getDisplayName());
+        assertEquals("Орск, Россия", geocoding.getCachedCoordinates("Орск").getDisplayName());
+        assertEquals(3, store.size());
+        assertEquals(0, store.getAppended());
+        verifyNoInteractions(mockClient);
+    }
+
+    @Test
+    void loadInto_MissingFile_ShouldLoadNothing() throws Exception {
+        assertEquals(0, newStore(tempDir.resolve("missing.log"))
+                .loadInto(new TtlCache<>(10, Duration.ofHours(1))).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void append_ShouldCreateParentDirectories() throws IOException {
+        Path file = tempDir.resolve("nested/dir/geocoding.log");
+        try (GeocodingStore store = newStore(file)) {
+            store.append("тверь", new Coordinates(56.8587, 35.9176, "Тверь, Россия"));
+            assertEquals(1, store.getAppended());
+        }
+        assertTrue(Files.size(file) > 0);
+    }
+}
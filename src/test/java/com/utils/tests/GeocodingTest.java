@@ -0,0 +1,67 @@
+package com.utils.tests;
+
+import com.utils.models.Coordinates;
+import com.utils.services.Geocoding;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GeocodingTest {
+
+    private static final String MOSCOW_JSON =
+            "[{\"lat\":\"55.7558\",\"lon\":\"37.6173\",\"display_name\":\"Москва, Россия\"}]";
+
+    @Mock
+    private OkHttpClient mockClient;
+
+    @Mock
+    private Call mockCall;
+
+    private Geocoding geocoding;
+
+    @BeforeEach
+    void setUp() {
+        geocoding = new Geocoding(mockClient);
+    }
+
+    private void stubResponse(String json) throws IOException {
+        HttpStubs.stubJson(mockClient, mockCall, json);
+    }
+
+    @Test
+    void getCoordinates_RepeatedCity_ShouldCallNominatimOnce() throws IOException {
+        stubResponse(MOSCOW_JSON);
+
+        Coordinates first = geocoding.getCoordinates("Москва");
+        Coordinates second = geocoding.getCoordinates("  москва ");
+
+        assertEquals("Москва, Россия", first.getDisplayName());
+        assertSame(first, second);
+        verify(mockClient, times(1)).newCall(any(Request.class));
+        assertEquals(1, geocoding.getCache().getHits());
+        assertEquals(1, geocoding.getCache().getMisses());
+    }
+
+    @Test
+    void getCoordinates_NotFound_ShouldNotCacheFailure() throws IOException {
+        stubResponse("[]");
+
+        assertThrows(IOException.class, () -> geocoding.getCoordinates("НесуществующийГород"));
+        assertThrows(IOException.class, () -> geocoding.getCoordinates("НесуществующийГород"));
+
+        verify(mockClient, times(2)).newCall(any(Request.class));
+        assertEquals(0, geocoding.getCache().size());
+    }
+}
@@ -0,0 +1,48 @@
+package com.utils.tests;
+
+import com.utils.services.CachingDns;
+import com.utils.services.HttpClients;
+import com.utils.services.TtlCache;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HttpClientsTest {
+
+    @Mock
+    private Dns mockDns;
+
+    @Test
+    void shared_ShouldReturnSameConfiguredClient() {
+        OkHttpClient client = HttpClients.shared();
+
+        assertSame(client, HttpClients.shared());
+        assertEquals(HttpClients.MAX_REQUESTS_PER_HOST, client.dispatcher().getMaxRequestsPerHost());
+        assertEquals(HttpClients.CONNECT_TIMEOUT.toMillis(), client.connectTimeoutMillis());
+        assertEquals(HttpClients.CALL_TIMEOUT.toMillis(), client.callTimeoutMillis());
+        assertInstanceOf(CachingDns.class, client.dns());
+    }
+
+    @Test
+    void cachingDns_RepeatedLookup_ShouldResolveOnce() throws Exception {
+        List<InetAddress> addresses = List.of(InetAddress.getByAddress(new byte[]{127, 0, 0, 1}));
+        when(mockDns.lookup("api.open-meteo.com")).thenReturn(addresses);
+        CachingDns dns = new CachingDns(mockDns, new TtlCache<>(4, Duration.ofMinutes(5)));
+
+        assertEquals(addresses, dns.lookup("api.open-meteo.com"));
+        assertEquals(addresses, dns.lookup("api.open-meteo.com"));
+
+        verify(mockDns, times(1)).lookup("api.open-meteo.com");
+    }
+}
@@ -0,0 +1,51 @@
+package com.utils.tests;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+// Общие заглушки OkHttp для тестов сервисов: клиент и вызов - моки, ответы - настоящие,
+// поэтому тело читается и строкой, и потоком
+final class HttpStubs {
+    private static final Request REQUEST = new Request.Builder().url("http://localhost/").build();
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private HttpStubs() {
+    }
+
+    static Response response(int code, String json) {
+        return new Response.Builder()
+                .request(REQUEST)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code == 200 ? "OK" : "Error")
+                .body(ResponseBody.create(json, JSON))
+                .build();
+    }
+
+    // Синхронные запросы: каждый execute() получает свежий ответ с тем же телом
+    static void stubJson(OkHttpClient client, Call call, String json) throws IOException {
+        when(client.newCall(any(Request.class))).thenReturn(call);
+        when(call.execute()).thenAnswer(invocation -> response(200, json));
+    }
+
+    // Асинхронные запросы: enqueue() сразу отдаёт ответ в колбэк
+    static void answerEnqueueWith(Call call, int code, String json) {
+        doAnswer(invocation -> {
+            Callback callback = invocation.getArgument(0);
+            callback.onResponse(call, response(code, json));
+            return null;
+        }).when(call).enqueue(any(Callback.class));
+    }
+}
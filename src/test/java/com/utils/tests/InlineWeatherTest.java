@@ -0,0 +1,150 @@
+package com.utils.tests;
+
+import com.utils.services.Gazetteer;
+import com.utils.services.Geocoding;
+import com.utils.services.InlineWeather;
+import com.utils.services.WeatherAPI;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.inputmessagecontent.InputTextMessageContent;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InlineWeatherTest {
+
+    private static final String WEEK_JSON = """
+            {
+                "daily": {
+                    "time": ["2023-10-01", "2023-10-02", "2023-10-03", "2023-10-04",
+                            "2023-10-05", "2023-10-06", "2023-10-07"],
+                    "temperature_2m_max": [20.5, 21.0, 22.0, 23.0, 24.0, 25.0, 26.0],
+                    "temperature_2m_min": [10.5, 11.0, 12.0, 13.0, 14.0, 15.0, 16.0],
+                    "weathercode": [0, 1, 2, 3, 0, 1, 2],
+                    "windspeed_10m_max": [15.0, 16.0, 17.0, 18.0, 19.0, 20.0, 21.0],
+                    "precipitation_probability_max": [30.0, 40.0, 50.0, 60.0, 70.0, 80.0, 90.0]
+                }
+            }
+            """;
+
+    @Mock
+    private OkHttpClient mockClient;
+
+    @Mock
+    private Call mockCall;
+
+    @Mock
+    private Response mockResponse;
+
+    @Mock
+    private ResponseBody mockResponseBody;
+
+    private InlineWeather inlineWeather;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Geocoding geocoding = new Geocoding(mockClient);
+        geocoding.useGazetteer(Gazetteer.loadBundled());
+        inlineWeather = new InlineWeather(new WeatherAPI(mockClient, geocoding));
+    }
+
+    private void answerForecastRequests() {
+        when(mockClient.newCall(any(Request.class))).thenReturn(mockCall);
+        when(mockResponse.isSuccessful()).thenReturn(true);
+        when(mockResponse.body()).thenReturn(mockResponseBody);
+        when(mockResponseBody.source()).thenAnswer(invocation -> new Buffer().writeUtf8(WEEK_JSON));
+        doAnswer(invocation -> {
+            Callback callback = invocation.getArgument(0);
+            callback.onResponse(mockCall, mockResponse);
+            return null;
+        }).when(mockCall).enqueue(any(Callback.class));
+    }
+
+    private AnswerInlineQuery ask(String text) throws Exception {
+        InlineQuery query = new InlineQuery();
+        query.setId("q-" + text);
+        query.setQuery(text);
+        return inlineWeather.answer(query).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void answer_Prefix_ShouldReturnWeatherCardsForMatchingCities() throws Exception {
+        answerForecastRequests();
+
+        AnswerInlineQuery answer = ask("Сама");
+
+        assertEquals("q-Сама", answer.getInlineQueryId());
+        assertEquals(300, answer.getCacheTime());
+        assertFalse(answer.getIsPersonal());
+        assertEquals(1, answer.getResults().size());
+
+        InlineQueryResultArticle card = (InlineQueryResultArticle) answer.getResults().getFirst();
+        assertEquals("Самара", card.getTitle());
+        assertTrue(card.getDescription().startsWith("11°C...21°C"));
+        assertTrue(((InputTextMessageContent) card.getInputMessageContent()).getMessageText()
+                .contains("Самара, Россия"));
+    }
+
+    @Test
+    void answer_NextKeystrokes_ShouldNotCallUpstreamAgain() throws Exception {
+        answerForecastRequests();
+
+        ask("Сама");
+        ask("Самар");
+        ask("самара ");
+        ask("Сама");
+
+        // Одна загрузка прогноза на город, дальше - кэш прогнозов и кэш ответов
+        verify(mockClient, times(1)).newCall(any(Request.class));
+    }
+
+    @Test
+    void answer_Typo_ShouldFallBackToFuzzyMatch() throws Exception {
+        answerForecastRequests();
+
+        AnswerInlineQuery answer = ask("Масква");
+
+        assertEquals("Москва", ((InlineQueryResultArticle) answer.getResults().getFirst()).getTitle());
+    }
+
+    @Test
+    void answer_UpstreamFailure_ShouldReturnShortLivedPartialAnswer() throws Exception {
+        when(mockClient.newCall(any(Request.class))).thenReturn(mockCall);
+        doAnswer(invocation -> {
+            Callback callback = invocation.getArgument(0);
+            callback.onFailure(mockCall, new IOException("timeout"));
+            return null;
+        }).when(mockCall).enqueue(any(Callback.class));
+
+        AnswerInlineQuery answer = ask("Сама");
+
+        assertTrue(answer.getResults().isEmpty());
+        assertTrue(answer.getCacheTime() < 60);
+    }
+
+    @Test
+    void answer_UnknownCity_ShouldReturnNoResults() throws Exception {
+        AnswerInlineQuery answer = ask("Щщщщщщщщ");
+
+        assertTrue(answer.getResults().isEmpty());
+        verifyNoInteractions(mockClient);
+    }
+}
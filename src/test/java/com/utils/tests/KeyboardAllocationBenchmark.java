@@ -0,0 +1,51 @@
+package com.utils.tests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.utils.services.KeyboardFactory;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+// Выделение памяти и время на одно исходящее сообщение: новая клавиатура на каждый ответ против общей
+// готовой (построение SendMessage + проверка + сериализация в JSON, как при отправке). Не запускается с тестами:
+//   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.utils.tests.KeyboardAllocationBenchmark
+public class KeyboardAllocationBenchmark {
+    private static final int MESSAGES = 200_000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2;
+            measure("новая клавиатура", KeyboardFactory::createMainWeatherKeyboard, report);
+            measure("общая клавиатура", KeyboardFactory::mainWeatherKeyboard, report);
+        }
+    }
+
+    private static void measure(String name, Supplier<ReplyKeyboardMarkup> keyboard, boolean report) throws Exception {
+        long threadId = Thread.currentThread().threadId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < MESSAGES; i++) {
+            SendMessage message = new SendMessage();
+            message.setChatId(1_000L + i);
+            message.setText("🌤 Погода в Москве: +20°C");
+            message.setReplyMarkup(keyboard.get());
+            message.validate();
+            sink += MAPPER.writeValueAsString(message).length();
+        }
+
+        long nanos = System.nanoTime() - start;
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        if (report) {
+            System.out.printf("%-18s %6d байт/сообщение, %5.2f мкс/сообщение%n",
+                    name, bytes / MESSAGES, nanos / 1e3 / MESSAGES);
+        }
+    }
+}
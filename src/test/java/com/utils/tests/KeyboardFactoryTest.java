@@ -1,7 +1,9 @@
 package com.utils.tests;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.utils.services.KeyboardFactory;
 import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
@@ -39,6 +41,19 @@ class KeyboardFactoryTest {
         assertEquals("/quit", row4.get(1).getText());
     }
 
+    @Test
+    void createSuggestionsKeyboard_ShouldPutEachCityOnOwnRowWithCancel() {
+        ReplyKeyboardMarkup keyboard = KeyboardFactory.createSuggestionsKeyboard(List.of("Москва", "Омск"));
+
+        assertTrue(keyboard.getOneTimeKeyboard());
+
+        List<KeyboardRow> keyboardRows = keyboard.getKeyboard();
+        assertEquals(3, keyboardRows.size());
+        assertEquals("Москва", keyboardRows.get(0).get(0).getText());
+        assertEquals("Омск", keyboardRows.get(1).get(0).getText());
+        assertEquals("↩️ Отмена", keyboardRows.get(2).get(0).getText());
+    }
+
     @Test
     void createCitiesKeyboard_ShouldCreateCorrectCities() {
         ReplyKeyboardMarkup keyboard = KeyboardFactory.createCitiesKeyboard();
@@ -147,4 +162,40 @@ class KeyboardFactoryTest {
         assertEquals("/start", row.get(0).getText());
         assertEquals("🌤 Погода", row.get(1).getText());
     }
-}
\ No newline at end of file
+
+    @Test
+    void mainWeatherKeyboard_ShouldBeSharedAndImmutable() {
+        ReplyKeyboardMarkup shared = KeyboardFactory.mainWeatherKeyboard();
+
+        assertSame(shared, KeyboardFactory.mainWeatherKeyboard());
+        assertEquals(KeyboardFactory.createMainWeatherKeyboard(), shared);
+        assertThrows(UnsupportedOperationException.class, () -> shared.setOneTimeKeyboard(true));
+
+        // Ряды отдаются копией - изменение не затрагивает общий экземпляр
+        shared.getKeyboard().get(0).add("Лишняя");
+        shared.getKeyboard().clear();
+        assertEquals(4, shared.getKeyboard().size());
+        assertEquals(2, shared.getKeyboard().get(0).size());
+    }
+
+    @Test
+    void sharedKeyboards_ShouldSerializeLikeFreshOnes() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        assertEquals(mapper.readTree(mapper.writeValueAsString(message(KeyboardFactory.createMainWeatherKeyboard()))),
+                mapper.readTree(mapper.writeValueAsString(message(KeyboardFactory.mainWeatherKeyboard()))));
+        assertEquals(mapper.readTree(mapper.writeValueAsString(message(KeyboardFactory.createCitiesKeyboard()))),
+                mapper.readTree(mapper.writeValueAsString(message(KeyboardFactory.citiesKeyboard()))));
+        assertEquals(mapper.readTree(mapper.writeValueAsString(message(KeyboardFactory.createCancelKeyboard()))),
+                mapper.readTree(mapper.writeValueAsString(message(KeyboardFactory.cancelKeyboard()))));
+    }
+
+    private static SendMessage message(ReplyKeyboardMarkup keyboard) throws Exception {
+        SendMessage message = new SendMessage();
+        message.setChatId(12345L);
+        message.setText("🌤 Погода");
+        message.setReplyMarkup(keyboard);
+        message.validate();
+        return message;
+    }
+}
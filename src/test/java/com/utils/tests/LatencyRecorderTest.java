@@ -0,0 +1,49 @@
+package com.utils.tests;
+
+import com.utils.services.LatencyRecorder;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyRecorderTest {
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+
+    @Test
+    void percentiles_ShouldBeTakenFromRecordedSamples() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 100; i >= 1; i--) {
+            recorder.record(millis(i));
+        }
+
+        assertEquals(100, recorder.getCount());
+        assertEquals(50.0, recorder.getPercentileMillis(50));
+        assertEquals(99.0, recorder.getPercentileMillis(99));
+        assertEquals(100.0, recorder.getMaxMillis());
+    }
+
+    @Test
+    void percentiles_ShouldOnlyCoverWindowButCountEverything() {
+        LatencyRecorder recorder = new LatencyRecorder(4);
+        recorder.record(millis(5_000));
+        for (int i = 0; i < 4; i++) {
+            recorder.record(millis(10));
+        }
+
+        assertEquals(5, recorder.getCount());
+        assertEquals(10.0, recorder.getPercentileMillis(99));
+        assertEquals(5_000.0, recorder.getMaxMillis());
+    }
+
+    @Test
+    void emptyRecorder_ShouldReportZero() {
+        LatencyRecorder recorder = new LatencyRecorder();
+
+        assertEquals(0, recorder.getCount());
+        assertEquals(0.0, recorder.getPercentileMillis(50));
+    }
+}
@@ -0,0 +1,82 @@
+package com.utils.tests;
+
+import com.utils.services.NominatimRateLimiter;
+import com.utils.services.NominatimRateLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NominatimRateLimiterTest {
+
+    @Test
+    void acquire_ShouldServeInteractiveBeforeBackground() throws Exception {
+        NominatimRateLimiter limiter = new NominatimRateLimiter(5, 1, 10);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        limiter.acquire(Priority.BACKGROUND).get(5, TimeUnit.SECONDS);
+        CompletableFuture<Void> background = limiter.acquire(Priority.BACKGROUND)
+                .thenRun(() -> order.add("background"));
+        CompletableFuture<Void> interactive = limiter.acquire(Priority.INTERACTIVE)
+                .thenRun(() -> order.add("interactive"));
+
+        CompletableFuture.allOf(background, interactive).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("interactive", "background"), order);
+        assertEquals(3, limiter.getGranted());
+        assertTrue(limiter.getMaxWaitMillis() >= 100);
+    }
+
+    @Test
+    void acquire_ShouldRespectRate() throws Exception {
+        NominatimRateLimiter limiter = new NominatimRateLimiter(10, 1, 10);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(Priority.INTERACTIVE).get(5, TimeUnit.SECONDS);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Первый запрос сразу, остальные три - не чаще чем раз в 100 мс
+        assertTrue(elapsedMillis >= 250, "elapsed " + elapsedMillis);
+    }
+
+    @Test
+    void acquire_BurstAfterIdle_ShouldKeepInterval() throws Exception {
+        NominatimRateLimiter limiter = new NominatimRateLimiter(10, 1, 10);
+        limiter.acquire(Priority.INTERACTIVE).get(5, TimeUnit.SECONDS);
+        Thread.sleep(300);
+
+        List<Long> grantedAt = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> first = limiter.acquire(Priority.INTERACTIVE)
+                .thenRun(() -> grantedAt.add(System.nanoTime()));
+        CompletableFuture<Void> second = limiter.acquire(Priority.INTERACTIVE)
+                .thenRun(() -> grantedAt.add(System.nanoTime()));
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+        // После простоя в запасе один токен, второй запрос ждёт пополнения
+        long gapMillis = (grantedAt.get(1) - grantedAt.get(0)) / 1_000_000;
+        assertTrue(gapMillis >= 90, "gap " + gapMillis);
+    }
+
+    @Test
+    void acquire_WhenQueueFull_ShouldFailFast() throws Exception {
+        NominatimRateLimiter limiter = new NominatimRateLimiter(0.5, 1, 1);
+        limiter.acquire(Priority.INTERACTIVE).get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> queued = limiter.acquire(Priority.INTERACTIVE);
+        CompletableFuture<Void> rejected = limiter.acquire(Priority.INTERACTIVE);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertFalse(queued.isDone());
+        assertEquals(1, limiter.getQueueDepth());
+        assertEquals(1, limiter.getRejected());
+    }
+}
@@ -0,0 +1,81 @@
+package com.utils.tests;
+
+import com.utils.models.Daily;
+import com.utils.models.OpenMeteoResponse;
+import com.utils.services.OpenMeteoDecoder;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenMeteoDecoderTest {
+
+    @Test
+    void decode_ShouldReadDailyColumnsAndSkipOtherFields() throws IOException {
+        String json = """
+                {
+                    "latitude": 55.75,
+                    "longitude": 37.625,
+                    "daily_units": {"time": "iso8601", "temperature_2m_max": "°C"},
+                    "hourly": {"time": ["2023-10-01T00:00"], "temperature_2m": [12.1]},
+                    "daily": {
+                        "time": ["2023-10-01", "2023-10-02"],
+                        "temperature_2m_max": [20.5, 22.0],
+                        "temperature_2m_min": [10.5, 12.0],
+                        "weathercode": [0, 61],
+                        "windspeed_10m_max": [15.0, 18.0],
+                        "precipitation_probability_max": [30, 40],
+                        "sunrise": ["2023-10-01T06:40", "2023-10-02T06:42"]
+                    }
+                }
+                """;
+
+        OpenMeteoResponse response = OpenMeteoDecoder.decode(new Buffer().writeUtf8(json));
+        Daily daily = response.getDaily();
+
+        assertEquals(Arrays.asList("2023-10-01", "2023-10-02"), daily.getTime());
+        assertEquals(Arrays.asList(20.5, 22.0), daily.getTemperature2mMax());
+        assertEquals(Arrays.asList(10.5, 12.0), daily.getTemperature2mMin());
+        assertEquals(Arrays.asList(0, 61), daily.getWeatherCode());
+        assertEquals(Arrays.asList(15.0, 18.0), daily.getWindspeed10mMax());
+        assertEquals(Arrays.asList(30.0, 40.0), daily.getPrecipitationProbabilityMax());
+    }
+
+    @Test
+    void decode_WithNullValues_ShouldUseNaNAndUnknownCode() throws IOException {
+        String json = """
+                {"daily": {"time": ["2023-10-01"], "weathercode": [null],
+                           "precipitation_probability_max": [null]}}
+                """;
+
+        Daily daily = OpenMeteoDecoder.decode(new Buffer().writeUtf8(json)).getDaily();
+
+        assertTrue(daily.getPrecipitationProbabilityMax().get(0).isNaN());
+        assertEquals(-1, daily.getWeatherCode().get(0));
+        assertNull(daily.getTemperature2mMax());
+    }
+
+    @Test
+    void decode_LongSeries_ShouldGrowBuffers() throws IOException {
+        StringBuilder temps = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            temps.append(i == 0 ? "" : ",").append(i);
+        }
+
+        Daily daily = OpenMeteoDecoder.decode(
+                new Buffer().writeUtf8("{\"daily\": {\"temperature_2m_max\": [" + temps + "]}}")).getDaily();
+
+        assertEquals(16, daily.getTemperature2mMax().size());
+        assertEquals(15.0, daily.getTemperature2mMax().get(15));
+    }
+
+    @Test
+    void decode_WithoutDaily_ShouldReturnEmptyResponse() throws IOException {
+        OpenMeteoResponse response = OpenMeteoDecoder.decode(new Buffer().writeUtf8("{\"error\": false}"));
+
+        assertNull(response.getDaily());
+    }
+}
@@ -0,0 +1,208 @@
+package com.utils.tests;
+
+import com.utils.services.OutboundScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutboundSchedulerTest {
+
+    private OutboundScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    private static SendMessage message(long chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        return message;
+    }
+
+    private static TelegramApiRequestException apiError(int code, Integer retryAfter) {
+        TelegramApiRequestException error = mock(TelegramApiRequestException.class);
+        when(error.getErrorCode()).thenReturn(code);
+        if (retryAfter != null) {
+            when(error.getParameters()).thenReturn(new ResponseParameters(null, retryAfter));
+        }
+        return error;
+    }
+
+    @Test
+    void submit_BurstToOneChat_ShouldMergeQueuedMessages() throws Exception {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstSending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler = new OutboundScheduler(message -> {
+            sent.add(message.getText());
+            firstSending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, null, 100, 10, 50);
+
+        CompletableFuture<Void> first = scheduler.submit(1, message(1, "Первое"));
+        assertTrue(firstSending.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = scheduler.submit(1, message(1, "Второе"));
+        CompletableFuture<Void> third = scheduler.submit(1, message(1, "Третье"));
+        release.countDown();
+
+        CompletableFuture.allOf(first, second, third).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("Первое", "Второе\n\nТретье"), sent);
+        assertEquals(1, scheduler.getMerged());
+        assertEquals(2, scheduler.getSent());
+    }
+
+    @Test
+    void submit_SameChat_ShouldKeepPerChatInterval() throws Exception {
+        List<Long> sentAt = Collections.synchronizedList(new ArrayList<>());
+        scheduler = new OutboundScheduler(message -> sentAt.add(System.nanoTime()), null, 100, 10, 300);
+
+        scheduler.submit(1, message(1, "Первое")).get(5, TimeUnit.SECONDS);
+        scheduler.submit(1, message(1, "Второе")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, sentAt.size());
+        assertTrue(sentAt.get(1) - sentAt.get(0) >= TimeUnit.MILLISECONDS.toNanos(290));
+    }
+
+    @Test
+    void submit_ManyChats_ShouldRespectGlobalRate() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        scheduler = new OutboundScheduler(message -> sent.incrementAndGet(), null, 50, 1, 1_000);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (long chatId = 1; chatId <= 20; chatId++) {
+            futures.add(scheduler.submit(chatId, message(chatId, "Погода")));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(20, sent.get());
+        // Первый токен есть сразу, остальные 19 - по 20 мс
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(360));
+    }
+
+    @Test
+    void submit_TooManyRequests_ShouldRetryAfterDelay() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicLong firstAttempt = new AtomicLong();
+        AtomicLong delivered = new AtomicLong();
+        TelegramApiRequestException tooManyRequests = apiError(429, 1);
+        scheduler = new OutboundScheduler(message -> {
+            if (attempts.incrementAndGet() == 1) {
+                firstAttempt.set(System.nanoTime());
+                throw tooManyRequests;
+            }
+            delivered.set(System.nanoTime());
+        }, null, 100, 10, 0);
+
+        scheduler.submit(1, message(1, "Погода")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, scheduler.getThrottled());
+        assertTrue(delivered.get() - firstAttempt.get() >= TimeUnit.MILLISECONDS.toNanos(990));
+    }
+
+    @Test
+    void submit_BlockedByUser_ShouldStopSendingAndNotify() throws Exception {
+        List<Long> blocked = Collections.synchronizedList(new ArrayList<>());
+        TelegramApiRequestException forbidden = apiError(403, null);
+        scheduler = new OutboundScheduler(message -> {
+            throw forbidden;
+        }, blocked::add, 100, 10, 0);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> scheduler.submit(7, message(7, "Погода")).get(5, TimeUnit.SECONDS));
+        assertSame(forbidden, error.getCause());
+        assertEquals(List.of(7L), blocked);
+        assertTrue(scheduler.isBlocked(7));
+
+        assertTrue(scheduler.submit(7, message(7, "Ещё")).isCompletedExceptionally());
+
+        scheduler.unblock(7);
+        assertFalse(scheduler.isBlocked(7));
+    }
+
+    @Test
+    void submitRequest_ShouldReturnResponseAndNotMergeWithMessages() throws Exception {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstSent = new CountDownLatch(1);
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        scheduler = new OutboundScheduler(message -> {
+            sent.add(message.getText());
+            firstSent.countDown();
+            release.join();
+        }, null, 100, 10, 0);
+
+        scheduler.submit(1, message(1, "Первое"));
+        assertTrue(firstSent.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> placeholder = scheduler.submit(1, () -> {
+            sent.add("Заглушка");
+            return 42;
+        });
+        CompletableFuture<Void> last = scheduler.submit(1, message(1, "Второе"));
+        release.complete(null);
+
+        assertEquals(42, placeholder.get(5, TimeUnit.SECONDS));
+        last.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("Первое", "Заглушка", "Второе"), sent);
+    }
+
+    @Test
+    void submitRequest_TooManyRequests_ShouldRetryAfterDelay() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        TelegramApiRequestException tooManyRequests = apiError(429, 1);
+        scheduler = new OutboundScheduler(message -> { }, null, 100, 10, 0);
+
+        long start = System.nanoTime();
+        CompletableFuture<String> edit = scheduler.submit(1, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw tooManyRequests;
+            }
+            return "изменено";
+        });
+
+        assertEquals("изменено", edit.get(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+        assertEquals(1, scheduler.getThrottled());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(990));
+    }
+
+    @Test
+    void submitRequest_BlockedByUser_ShouldFailAndNotify() {
+        List<Long> blocked = Collections.synchronizedList(new ArrayList<>());
+        TelegramApiRequestException forbidden = apiError(403, null);
+        scheduler = new OutboundScheduler(message -> { }, blocked::add, 100, 10, 0);
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> scheduler.submit(7, () -> {
+                    throw forbidden;
+                }).get(5, TimeUnit.SECONDS));
+
+        assertSame(forbidden, error.getCause());
+        assertEquals(List.of(7L), blocked);
+        assertTrue(scheduler.isBlocked(7));
+    }
+}
@@ -0,0 +1,62 @@
+package com.utils.tests;
+
+import com.utils.models.UserSession;
+import com.utils.services.SessionTable;
+import com.utils.services.WalSessionStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Замер записи и восстановления хранилища сессий на миллионе чатов (не запускается вместе с тестами):
+//   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.utils.tests.SessionStoreBenchmark
+public class SessionStoreBenchmark {
+    private static final int CHATS = 1_000_000;
+    private static final String[] CITIES = {"Москва", "Санкт-Петербург", "Новосибирск", "Екатеринбург", "Казань"};
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("sessions-benchmark");
+        Path walOnly = Files.createDirectory(directory.resolve("wal-only"));
+        try {
+            long start = System.nanoTime();
+            SessionTable table = new SessionTable(CHATS);
+            WalSessionStore store = WalSessionStore.open(directory, Duration.ofHours(1));
+            store.snapshotFrom(table::forEach);
+            for (int i = 0; i < CHATS; i++) {
+                UserSession session = new UserSession(i, true, (byte) 0, CITIES[i % CITIES.length]);
+                table.put(session);
+                store.save(session);
+            }
+            long enqueuedMillis = (System.nanoTime() - start) / 1_000_000;
+            while (store.getWrites() < CHATS) {
+                Thread.onSpinWait();
+            }
+            long writtenMillis = (System.nanoTime() - start) / 1_000_000;
+            // Худший случай между снимками: всё состояние только в WAL
+            Files.copy(directory.resolve(WalSessionStore.WAL_FILE), walOnly.resolve(WalSessionStore.WAL_FILE));
+            store.close();
+
+            System.out.printf("Запись: %d сессий в очереди за %d мс, в WAL за %d мс, %s%n",
+                    CHATS, enqueuedMillis, writtenMillis, store);
+            System.out.printf("Снимок: %d КБ, WAL: %d КБ%n",
+                    Files.size(directory.resolve(WalSessionStore.SNAPSHOT_FILE)) / 1024,
+                    Files.size(walOnly.resolve(WalSessionStore.WAL_FILE)) / 1024);
+
+            try (WalSessionStore recovered = WalSessionStore.open(directory, Duration.ofHours(1))) {
+                System.out.printf("Восстановление из снимка: %d сессий за %d мс%n",
+                        recovered.loadAll().size(), recovered.getRecoveryMillis());
+            }
+            try (WalSessionStore recovered = WalSessionStore.open(walOnly, Duration.ofHours(1))) {
+                System.out.printf("Восстановление из WAL: %d сессий за %d мс%n",
+                        recovered.loadAll().size(), recovered.getRecoveryMillis());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
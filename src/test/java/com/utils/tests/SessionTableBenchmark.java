@@ -0,0 +1,82 @@
+package com.utils.tests;
+
+import com.utils.models.UserSession;
+import com.utils.services.SessionTable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Память на сессию: три ConcurrentHashMap<Long, ...> против одной SessionTable (не запускается вместе с тестами):
+//   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.utils.tests.SessionTableBenchmark
+public class SessionTableBenchmark {
+    private static final int SESSIONS = 1_000_000;
+    private static final String[] CITIES = {"Москва", "Санкт-Петербург", "Новосибирск", "Екатеринбург", "Казань"};
+
+    private enum State { DEFAULT, WAITING_FOR_CITY, INACTIVE }
+
+    public static void main(String[] args) {
+        measureMaps();
+        measureTable();
+    }
+
+    private static void measureMaps() {
+        long base = usedHeap();
+        Map<Long, String> cities = new ConcurrentHashMap<>();
+        Map<Long, State> states = new ConcurrentHashMap<>();
+        Map<Long, Boolean> active = new ConcurrentHashMap<>();
+        for (long chatId = 0; chatId < SESSIONS; chatId++) {
+            cities.put(chatId, CITIES[(int) (chatId % CITIES.length)]);
+            states.put(chatId, State.DEFAULT);
+            active.put(chatId, true);
+        }
+        long bytes = usedHeap() - base;
+
+        long lookupMillis = time(() -> {
+            for (long chatId = 0; chatId < SESSIONS; chatId++) {
+                if (!active.get(chatId) || states.get(chatId) != State.DEFAULT || cities.get(chatId) == null) {
+                    throw new AssertionError();
+                }
+            }
+        });
+        report("3 x ConcurrentHashMap", bytes, lookupMillis, cities.size());
+    }
+
+    private static void measureTable() {
+        long base = usedHeap();
+        SessionTable table = new SessionTable();
+        for (long chatId = 0; chatId < SESSIONS; chatId++) {
+            table.put(new UserSession(chatId, true, (byte) 0, CITIES[(int) (chatId % CITIES.length)]));
+        }
+        long bytes = usedHeap() - base;
+
+        long lookupMillis = time(() -> {
+            for (long chatId = 0; chatId < SESSIONS; chatId++) {
+                UserSession session = table.get(chatId);
+                if (!session.isActive() || session.getState() != 0 || session.getCity() == null) {
+                    throw new AssertionError();
+                }
+            }
+        });
+        report("SessionTable", bytes, lookupMillis, table.size());
+    }
+
+    private static void report(String name, long bytes, long lookupMillis, int size) {
+        System.out.printf("%-22s %,d сессий: %,d МБ, %d байт/сессию, чтение всех за %d мс%n",
+                name, size, bytes / (1024 * 1024), bytes / size, lookupMillis);
+    }
+
+    private static long time(Runnable action) {
+        action.run();
+        long start = System.nanoTime();
+        action.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
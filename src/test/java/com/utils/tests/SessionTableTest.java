@@ -0,0 +1,127 @@
+package com.utils.tests;
+
+import com.utils.models.UserSession;
+import com.utils.services.SessionTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionTableTest {
+
+    @Test
+    void put_ShouldReplaceExistingSession() {
+        SessionTable table = new SessionTable();
+
+        table.put(new UserSession(1, true, (byte) 0, "Москва"));
+        table.put(new UserSession(1, true, (byte) 1, "Казань"));
+
+        assertEquals(1, table.size());
+        assertEquals("Казань", table.get(1).getCity());
+        assertNull(table.get(2));
+    }
+
+    @Test
+    void update_ReturningNull_ShouldRemove() {
+        SessionTable table = new SessionTable();
+        table.put(new UserSession(-100500, true, (byte) 0, null));
+
+        assertTrue(table.remove(-100500));
+        assertFalse(table.remove(-100500));
+        assertNull(table.get(-100500));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void randomOperations_ShouldMatchHashMap() {
+        SessionTable table = new SessionTable(16);
+        Map<Long, UserSession> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long chatId = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(chatId) != null, table.remove(chatId));
+            } else {
+                UserSession session = new UserSession(chatId, random.nextBoolean(), (byte) random.nextInt(3), "Город");
+                expected.put(chatId, session);
+                table.put(session);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (long chatId = -2_500; chatId < 2_500; chatId++) {
+            assertEquals(expected.get(chatId), table.get(chatId));
+        }
+        AtomicInteger visited = new AtomicInteger();
+        table.forEach(session -> {
+            assertEquals(expected.get(session.getChatId()), session);
+            visited.incrementAndGet();
+        });
+        assertEquals(expected.size(), visited.get());
+    }
+
+    @Test
+    void update_ConcurrentChanges_ShouldNotLoseUpdates() throws Exception {
+        SessionTable table = new SessionTable();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int t = 0; t < futures.length; t++) {
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        long chatId = i % 100;
+                        table.update(chatId, current -> {
+                            int count = current == null ? 0 : Integer.parseInt(current.getCity());
+                            return new UserSession(chatId, true, (byte) 0, String.valueOf(count + 1));
+                        });
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (long chatId = 0; chatId < 100; chatId++) {
+            assertEquals("800", table.get(chatId).getCity());
+        }
+    }
+
+    @Test
+    void evictIdle_ShouldRemoveOnlyIdleAcceptedSessions() {
+        AtomicLong now = new AtomicLong(0);
+        SessionTable table = new SessionTable(16, now::get);
+        for (long id = 1; id <= 100; id++) {
+            table.put(new UserSession(id, true, (byte) 0, "Город " + id));
+        }
+
+        now.set(60_000);
+        for (long id = 1; id <= 10; id++) {
+            assertTrue(table.touch(id));
+        }
+        assertFalse(table.touch(1000));
+
+        now.set(90_000);
+        // Сессию 50 оставляем - её не приняли к вытеснению
+        int evicted = table.evictIdle(45_000, session -> session.getChatId() != 50);
+
+        assertEquals(89, evicted);
+        assertEquals(11, table.size());
+        assertNotNull(table.get(50));
+        for (long id = 1; id <= 10; id++) {
+            assertEquals("Город " + id, table.get(id).getCity());
+        }
+        assertNull(table.get(11));
+    }
+}
@@ -0,0 +1,129 @@
+package com.utils.tests;
+
+import com.utils.services.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void execute_ConcurrentCallsForSameKey_ShouldLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("москва", () -> {
+                    loads.incrementAndGet();
+                    release.join();
+                    return "Москва, Россия";
+                })));
+            }
+
+            while (singleFlight.getCalls() < callers) {
+                Thread.sleep(5);
+            }
+            release.complete(null);
+
+            for (Future<String> result : results) {
+                assertEquals("Москва, Россия", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(callers - 1, singleFlight.getCollapsed());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    void execute_WhenLoaderFails_ShouldPropagateErrorAndAllowRetry() throws IOException {
+        assertThrows(IOException.class, () -> singleFlight.execute("москва", () -> {
+            throw new IOException("Ошибка геокодирования: 429");
+        }));
+
+        assertEquals("ok", singleFlight.execute("москва", () -> "ok"));
+        assertEquals(0, singleFlight.getCollapsed());
+    }
+
+    @Test
+    void execute_WhenLoaderThrowsError_ShouldReleaseWaiters() throws Exception {
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> owner = executor.submit(() -> singleFlight.execute("москва", () -> {
+                release.join();
+                throw new StackOverflowError();
+            }));
+            while (singleFlight.getInFlight() == 0) {
+                Thread.sleep(5);
+            }
+            Future<String> waiter = executor.submit(() -> singleFlight.execute("москва", () -> "не должен вызываться"));
+            while (singleFlight.getCollapsed() == 0) {
+                Thread.sleep(5);
+            }
+            release.complete(null);
+
+            ExecutionException ownerError = assertThrows(ExecutionException.class, () -> owner.get(5, TimeUnit.SECONDS));
+            ExecutionException waiterError = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(StackOverflowError.class, ownerError.getCause());
+            assertInstanceOf(StackOverflowError.class, waiterError.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    void execute_SequentialCalls_ShouldNotCollapse() throws IOException {
+        singleFlight.execute("москва", () -> "1");
+        singleFlight.execute("москва", () -> "2");
+
+        assertEquals(2, singleFlight.getCalls());
+        assertEquals(0, singleFlight.getCollapsed());
+    }
+
+    @Test
+    void executeAsync_ConcurrentCallsForSameKey_ShouldShareOneLoad() throws Exception {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("москва", () -> {
+            loads.incrementAndGet();
+            return upstream;
+        });
+        CompletableFuture<String> second = singleFlight.executeAsync("москва", () -> {
+            loads.incrementAndGet();
+            return upstream;
+        });
+
+        assertFalse(first.isDone());
+        upstream.complete("Москва, Россия");
+
+        assertEquals("Москва, Россия", first.get());
+        assertEquals("Москва, Россия", second.get());
+        assertEquals(1, loads.get());
+        assertEquals(1, singleFlight.getCollapsed());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+}
@@ -1,24 +1,54 @@
 package com.utils.tests;
 
+import com.utils.services.AdmissionPolicy;
+import com.utils.services.CityNameIndex;
+import com.utils.services.ColdSessionTier;
+import com.utils.services.Gazetteer;
+import com.utils.services.InlineWeather;
+import com.utils.services.OutboundScheduler;
+import com.utils.services.SessionTable;
 import com.utils.services.TelegramBot;
 import com.utils.services.WeatherAPI;
+import com.utils.services.WeatherBotDialogLogic;
 import com.utils.services.Geocoding;
 import com.utils.models.Coordinates;
+import com.utils.models.UserSession;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Chat;
 import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
 import java.lang.reflect.Field;
-import java.util.Map;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -69,6 +99,21 @@ class TelegramBotTest {
         throw new IllegalArgumentException("UserState." + stateName + " not found");
     }
 
+    private byte getUserStateCode(String stateName) throws Exception {
+        return (byte) ((Enum<?>) getUserStateValue(stateName)).ordinal();
+    }
+
+    private UserSession getSession(TelegramBot bot, long chatId) throws Exception {
+        SessionTable sessions = getPrivateField(bot, "sessions");
+        return sessions.get(chatId);
+    }
+
+    private void putSession(TelegramBot bot, long chatId, boolean active, String state, String city)
+            throws Exception {
+        SessionTable sessions = getPrivateField(bot, "sessions");
+        sessions.put(new UserSession(chatId, active, getUserStateCode(state), city));
+    }
+
     private Update createTextUpdate(long chatId, String text) {
         Update update = new Update();
         Message message = new Message();
@@ -82,6 +127,45 @@ class TelegramBotTest {
         return update;
     }
 
+    private Update createCallbackUpdate(long chatId, int messageId, String messageText, String data) {
+        Update update = new Update();
+        CallbackQuery callbackQuery = new CallbackQuery();
+        Message message = new Message();
+        Chat chat = new Chat();
+
+        chat.setId(chatId);
+        message.setChat(chat);
+        message.setMessageId(messageId);
+        message.setText(messageText);
+        callbackQuery.setId("callback-" + messageId);
+        callbackQuery.setMessage(message);
+        callbackQuery.setData(data);
+        update.setCallbackQuery(callbackQuery);
+
+        return update;
+    }
+
+    // argThat с проверкой типа: бот вызывает execute и с SendMessage, и с EditMessageText
+    private static TelegramApiRequestException apiError(int code, String description) {
+        TelegramApiRequestException error = mock(TelegramApiRequestException.class);
+        lenient().when(error.getErrorCode()).thenReturn(code);
+        lenient().when(error.getApiResponse()).thenReturn(description);
+        return error;
+    }
+
+    private static List<String> keyboardButtons(SendMessage message) {
+        if (!(message.getReplyMarkup() instanceof ReplyKeyboardMarkup keyboard)) {
+            return List.of();
+        }
+        return keyboard.getKeyboard().stream()
+                .flatMap(row -> row.stream().map(KeyboardButton::getText))
+                .toList();
+    }
+
+    private static <T> T argOfType(Class<T> type, Predicate<T> condition) {
+        return argThat(argument -> type.isInstance(argument) && condition.test(type.cast(argument)));
+    }
+
     @Test
     void getBotUsername_ShouldReturnConfiguredUsername() {
         assertEquals(BOT_USERNAME, telegramBot.getBotUsername());
@@ -101,8 +185,7 @@ class TelegramBotTest {
 
         botSpy.onUpdateReceived(update);
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        assertTrue(userSessions.get(TEST_CHAT_ID));
+        assertTrue(getSession(botSpy, TEST_CHAT_ID).isActive());
     }
 
     @Test
@@ -112,8 +195,7 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", null);
 
         botSpy.onUpdateReceived(update);
 
@@ -127,12 +209,11 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", null);
 
         botSpy.onUpdateReceived(update);
 
-        assertFalse(userSessions.get(TEST_CHAT_ID));
+        assertFalse(getSession(botSpy, TEST_CHAT_ID).isActive());
     }
 
     @Test
@@ -142,11 +223,7 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
-
-        Map<Long, String> userCities = getPrivateField(botSpy, "userCities");
-        userCities.put(TEST_CHAT_ID, "Москва");
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
 
         when(mockWeatherAPI.getFormattedWeatherByCity("Москва", 1))
                 .thenReturn("Погода в Москве: солнечно, +20°C");
@@ -163,8 +240,7 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", null);
 
         botSpy.onUpdateReceived(update);
 
@@ -178,14 +254,11 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", null);
 
         botSpy.onUpdateReceived(update);
 
-        Map<Long, Object> userStates = getPrivateField(botSpy, "userStates");
-        Object waitingState = getUserStateValue("WAITING_FOR_CITY");
-        assertEquals(waitingState, userStates.get(TEST_CHAT_ID));
+        assertEquals(getUserStateCode("WAITING_FOR_CITY"), getSession(botSpy, TEST_CHAT_ID).getState());
     }
 
     @Test
@@ -196,19 +269,82 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
+        putSession(botSpy, TEST_CHAT_ID, true, "WAITING_FOR_CITY", null);
 
         when(mockGeocoding.getCoordinates("Москва")).thenReturn(coordinates);
 
-        Map<Long, Object> userStates = getPrivateField(botSpy, "userStates");
-        Object waitingState = getUserStateValue("WAITING_FOR_CITY");
-        userStates.put(TEST_CHAT_ID, waitingState);
-
         botSpy.onUpdateReceived(update);
 
-        Map<Long, String> userCities = getPrivateField(botSpy, "userCities");
-        assertEquals("Москва", userCities.get(TEST_CHAT_ID));
+        assertEquals("Москва", getSession(botSpy, TEST_CHAT_ID).getCity());
+        assertEquals(getUserStateCode("DEFAULT"), getSession(botSpy, TEST_CHAT_ID).getState());
+    }
+
+    @Test
+    void cityOutsideGazetteer_ShouldOfferTypedNameAndGeocodeOnlyWhenChosen() throws Exception {
+        CityNameIndex cityIndex = CityNameIndex.fromGazetteer(Gazetteer.loadBundled());
+        when(mockGeocoding.getCityIndex()).thenReturn(cityIndex);
+        when(mockGeocoding.getCoordinates("Орск")).thenReturn(new Coordinates(51.2293, 58.4752, "Орск, Россия"));
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
+        putSession(botSpy, TEST_CHAT_ID, true, "WAITING_FOR_CITY", null);
+
+        botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "Орск"));
+
+        // Похожие города и само введённое название предлагаются сразу, без запроса к Nominatim
+        verify(botSpy).execute(argOfType(SendMessage.class,
+                message -> keyboardButtons(message).containsAll(List.of("Омск", "Орск"))));
+        verify(mockGeocoding, never()).getCoordinates(any());
+        assertEquals(getUserStateCode("WAITING_FOR_CITY"), getSession(botSpy, TEST_CHAT_ID).getState());
+
+        botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "Орск"));
+
+        assertEquals("Орск", getSession(botSpy, TEST_CHAT_ID).getCity());
+        assertEquals(getUserStateCode("DEFAULT"), getSession(botSpy, TEST_CHAT_ID).getState());
+        verify(mockGeocoding, never()).getCoordinates("Омск");
+    }
+
+    @Test
+    void misspelledCity_ShouldSuggestNearestKnownCityWithoutGeocoding() throws Exception {
+        when(mockGeocoding.getCityIndex()).thenReturn(CityNameIndex.fromGazetteer(Gazetteer.loadBundled()));
+        lenient().when(mockGeocoding.getCachedCoordinates("Москва")).thenReturn(new Coordinates(55.7558, 37.6173, "Москва, Россия"));
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
+        putSession(botSpy, TEST_CHAT_ID, true, "WAITING_FOR_CITY", null);
+
+        botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "Масква"));
+        verify(botSpy).execute(argOfType(SendMessage.class,
+                message -> keyboardButtons(message).containsAll(List.of("Москва", "Масква"))));
+
+        botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "Москва"));
+
+        assertEquals("Москва", getSession(botSpy, TEST_CHAT_ID).getCity());
+        assertEquals(getUserStateCode("DEFAULT"), getSession(botSpy, TEST_CHAT_ID).getState());
+        verify(mockGeocoding, never()).getCoordinates(any());
+    }
+
+    @Test
+    void misspelledCity_ThroughMailbox_ShouldStayOnFastLane() throws Exception {
+        when(mockGeocoding.getCityIndex()).thenReturn(CityNameIndex.fromGazetteer(Gazetteer.loadBundled()));
+
+        TelegramBot botSpy = spy(telegramBot);
+        CountDownLatch replied = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            replied.countDown();
+            return mockTelegramMessage;
+        }).when(botSpy).execute(any(SendMessage.class));
+        putSession(botSpy, TEST_CHAT_ID, true, "WAITING_FOR_CITY", null);
+
+        try {
+            botSpy.onUpdatesReceived(List.of(createTextUpdate(TEST_CHAT_ID, "Масква")));
+
+            assertTrue(replied.await(2, TimeUnit.SECONDS));
+            assertEquals(0, botSpy.getIoLane().getDispatched());
+            verify(mockGeocoding, never()).getCoordinates(any());
+        } finally {
+            botSpy.onClosing();
+        }
     }
 
     @Test
@@ -218,19 +354,14 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
+        putSession(botSpy, TEST_CHAT_ID, true, "WAITING_FOR_CITY", null);
 
         when(mockGeocoding.getCoordinates("НесуществующийГород"))
                 .thenThrow(new RuntimeException("Город не найден"));
 
-        Map<Long, Object> userStates = getPrivateField(botSpy, "userStates");
-        Object waitingState = getUserStateValue("WAITING_FOR_CITY");
-        userStates.put(TEST_CHAT_ID, waitingState);
-
         botSpy.onUpdateReceived(update);
 
-        assertEquals(waitingState, userStates.get(TEST_CHAT_ID));
+        assertEquals(getUserStateCode("WAITING_FOR_CITY"), getSession(botSpy, TEST_CHAT_ID).getState());
     }
 
     @Test
@@ -240,8 +371,7 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, false);
+        putSession(botSpy, TEST_CHAT_ID, false, "INACTIVE", null);
 
         botSpy.onUpdateReceived(update);
 
@@ -262,9 +392,8 @@ class TelegramBotTest {
         botSpy.onUpdateReceived(user1Start);
         botSpy.onUpdateReceived(user2Start);
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        assertTrue(userSessions.get(user1ChatId));
-        assertTrue(userSessions.get(user2ChatId));
+        assertTrue(getSession(botSpy, user1ChatId).isActive());
+        assertTrue(getSession(botSpy, user2ChatId).isActive());
     }
 
     @Test
@@ -274,14 +403,11 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", null);
 
         botSpy.onUpdateReceived(update);
 
-        Map<Long, Object> userStates = getPrivateField(botSpy, "userStates");
-        Object waitingState = getUserStateValue("WAITING_FOR_CITY");
-        assertEquals(waitingState, userStates.get(TEST_CHAT_ID));
+        assertEquals(getUserStateCode("WAITING_FOR_CITY"), getSession(botSpy, TEST_CHAT_ID).getState());
     }
 
     @Test
@@ -291,17 +417,11 @@ class TelegramBotTest {
         TelegramBot botSpy = spy(telegramBot);
         doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
 
-        Map<Long, Boolean> userSessions = getPrivateField(botSpy, "userSessions");
-        userSessions.put(TEST_CHAT_ID, true);
-
-        Map<Long, Object> userStates = getPrivateField(botSpy, "userStates");
-        Object waitingState = getUserStateValue("WAITING_FOR_CITY");
-        userStates.put(TEST_CHAT_ID, waitingState);
+        putSession(botSpy, TEST_CHAT_ID, true, "WAITING_FOR_CITY", null);
 
         botSpy.onUpdateReceived(update);
 
-        Object defaultState = getUserStateValue("DEFAULT");
-        assertEquals(defaultState, userStates.get(TEST_CHAT_ID));
+        assertEquals(getUserStateCode("DEFAULT"), getSession(botSpy, TEST_CHAT_ID).getState());
     }
 
     @Test
@@ -329,4 +449,482 @@ class TelegramBotTest {
         verifyNoInteractions(mockWeatherAPI);
         verifyNoInteractions(mockGeocoding);
     }
-}
\ No newline at end of file
+
+    @Test
+    void evictedSession_ShouldBeRestoredFromColdTierOnNextMessage(@TempDir Path tempDir) throws Exception {
+        Update update = createTextUpdate(TEST_CHAT_ID, "📍 Сменить город");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
+
+        try (ColdSessionTier coldTier = new ColdSessionTier(tempDir.resolve("cold.bin"))) {
+            coldTier.put(new UserSession(TEST_CHAT_ID, true, getUserStateCode("DEFAULT"), "Москва"));
+            botSpy.enableIdleEviction(Duration.ofMinutes(30), coldTier);
+
+            botSpy.onUpdateReceived(update);
+
+            UserSession session = getSession(botSpy, TEST_CHAT_ID);
+            assertTrue(session.isActive());
+            assertEquals("Москва", session.getCity());
+            assertEquals(getUserStateCode("WAITING_FOR_CITY"), session.getState());
+        } finally {
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void quitAfterRehydration_ShouldNotBringBackEvictedSession(@TempDir Path tempDir) throws Exception {
+        AtomicLong now = new AtomicLong();
+        setPrivateField(telegramBot, "sessions", new SessionTable(16, now::get));
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
+
+        try (ColdSessionTier coldTier = new ColdSessionTier(tempDir.resolve("cold.bin"))) {
+            botSpy.enableIdleEviction(Duration.ofMinutes(30), coldTier);
+            putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+            now.addAndGet(Duration.ofMinutes(31).toMillis());
+            assertEquals(1, botSpy.evictIdleSessions());
+            botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "/quit"));
+            assertEquals(0, coldTier.size());
+
+            // Завершённая сессия без города при выгрузке просто забывается
+            now.addAndGet(Duration.ofMinutes(31).toMillis());
+            assertEquals(1, botSpy.evictIdleSessions());
+            botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "/help"));
+
+            UserSession session = getSession(botSpy, TEST_CHAT_ID);
+            assertTrue(session == null || !session.isActive());
+            assertTrue(session == null || session.getCity() == null);
+        } finally {
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void periodCallback_ShouldAnswerAndEditForecastInPlace() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        when(mockDialogLogic.getWeatherForPeriod("Москва", 2)).thenReturn("Погода в Москве на завтра: ясно");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(CompletableFuture.completedFuture(true)).when(botSpy).executeAsync(any(AnswerCallbackQuery.class));
+        doReturn(true).when(botSpy).execute(any(EditMessageText.class));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        botSpy.onUpdateReceived(createCallbackUpdate(TEST_CHAT_ID, 77, "Погода в Москве на сегодня", "weather_tomorrow"));
+
+        verify(botSpy).executeAsync(argThat((AnswerCallbackQuery answer) -> "callback-77".equals(answer.getCallbackQueryId())));
+        verify(botSpy).execute(argThat((EditMessageText edit) -> edit.getMessageId() == 77
+                && edit.getText().equals("Погода в Москве на завтра: ясно")
+                && edit.getReplyMarkup() != null));
+        verify(botSpy, never()).execute(any(SendMessage.class));
+    }
+
+    @Test
+    void periodCallback_WhenEditRateLimited_ShouldNotResendAsNewMessage() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        when(mockDialogLogic.getWeatherForPeriod("Москва", 2)).thenReturn("Погода в Москве на завтра: ясно");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(CompletableFuture.completedFuture(true)).when(botSpy).executeAsync(any(AnswerCallbackQuery.class));
+        doThrow(apiError(429, "Too Many Requests: retry after 5")).when(botSpy).execute(any(EditMessageText.class));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        botSpy.onUpdateReceived(createCallbackUpdate(TEST_CHAT_ID, 77, "Погода в Москве на сегодня", "weather_tomorrow"));
+
+        verify(botSpy).execute(any(EditMessageText.class));
+        verify(botSpy, never()).execute(any(SendMessage.class));
+    }
+
+    @Test
+    void periodCallback_WhenMessageToEditIsGone_ShouldSendForecastAsNewMessage() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        when(mockDialogLogic.getWeatherForPeriod("Москва", 2)).thenReturn("Погода в Москве на завтра: ясно");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(CompletableFuture.completedFuture(true)).when(botSpy).executeAsync(any(AnswerCallbackQuery.class));
+        doThrow(apiError(400, "Bad Request: message to edit not found")).when(botSpy).execute(any(EditMessageText.class));
+        doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        botSpy.onUpdateReceived(createCallbackUpdate(TEST_CHAT_ID, 77, "Погода в Москве на сегодня", "weather_tomorrow"));
+
+        verify(botSpy).execute(argOfType(SendMessage.class,
+                message -> message.getText().equals("Погода в Москве на завтра: ясно")));
+    }
+
+    @Test
+    void periodCallbackWithoutCity_ShouldOnlyAnswer() throws Exception {
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(CompletableFuture.completedFuture(true)).when(botSpy).executeAsync(any(AnswerCallbackQuery.class));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", null);
+
+        botSpy.onUpdateReceived(createCallbackUpdate(TEST_CHAT_ID, 78, "Добро пожаловать", "weather_today"));
+
+        verify(botSpy).executeAsync(argThat((AnswerCallbackQuery answer) -> answer.getText() != null));
+        verify(botSpy, never()).execute(any(EditMessageText.class));
+        verify(botSpy, never()).execute(any(SendMessage.class));
+    }
+
+    @Test
+    void cityCallback_ShouldSetCityAndShowTodayForecast() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        when(mockDialogLogic.getWeatherForPeriod("Казань", 1)).thenReturn("Погода в Казани: облачно");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(CompletableFuture.completedFuture(true)).when(botSpy).executeAsync(any(AnswerCallbackQuery.class));
+        doReturn(true).when(botSpy).execute(any(EditMessageText.class));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "WAITING_FOR_CITY", null);
+
+        botSpy.onUpdateReceived(createCallbackUpdate(TEST_CHAT_ID, 79, "Выберите город", "city_kazan"));
+
+        UserSession session = getSession(botSpy, TEST_CHAT_ID);
+        assertEquals("Казань", session.getCity());
+        assertEquals(getUserStateCode("DEFAULT"), session.getState());
+        verify(botSpy).execute(argThat((EditMessageText edit) -> edit.getText().equals("Погода в Казани: облачно")));
+    }
+
+    @Test
+    void progressiveReply_ShouldSendPlaceholderAndEditItIntoForecast() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        CompletableFuture<String> forecast = new CompletableFuture<>();
+        when(mockDialogLogic.getWeatherForPeriodAsync("Москва", 1)).thenReturn(forecast);
+
+        Message placeholder = new Message();
+        placeholder.setMessageId(90);
+        placeholder.setText("⏳ Загружаю прогноз для Москва...");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(placeholder).when(botSpy).execute(any(SendMessage.class));
+        doReturn(true).when(botSpy).execute(any(EditMessageText.class));
+        botSpy.enableProgressiveReplies(Duration.ofSeconds(5));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "🌤 Сегодня"));
+
+        verify(botSpy).execute(argOfType(SendMessage.class, message -> message.getText().startsWith("⏳")));
+        assertEquals(1, botSpy.getPerceivedLatency().getCount());
+        assertEquals(0, botSpy.getCompletionLatency().getCount());
+
+        forecast.complete("Погода в Москве: солнечно");
+
+        verify(botSpy, timeout(2_000)).execute(argOfType(EditMessageText.class, edit -> edit.getMessageId() == 90
+                && edit.getText().equals("Погода в Москве: солнечно")));
+        verify(botSpy, times(1)).execute(any(SendMessage.class));
+        assertEquals(1, botSpy.getCompletionLatency().getCount());
+    }
+
+    @Test
+    void progressiveReply_WithOutboundQueue_ShouldSendPlaceholderAndEditThroughQueue() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        CompletableFuture<String> forecast = new CompletableFuture<>();
+        when(mockDialogLogic.getWeatherForPeriodAsync("Москва", 1)).thenReturn(forecast);
+
+        Message placeholder = new Message();
+        placeholder.setMessageId(91);
+        placeholder.setText("⏳ Загружаю прогноз для Москва...");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(placeholder).when(botSpy).execute(any(SendMessage.class));
+        doReturn(true).when(botSpy).execute(any(EditMessageText.class));
+        OutboundScheduler outbound = botSpy.enableOutboundQueue();
+        botSpy.enableProgressiveReplies(Duration.ofSeconds(5));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        try {
+            botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "🌤 Сегодня"));
+            forecast.complete("Погода в Москве: солнечно");
+
+            verify(botSpy, timeout(3_000)).execute(argOfType(EditMessageText.class, edit -> edit.getMessageId() == 91
+                    && edit.getText().equals("Погода в Москве: солнечно")));
+            // И заглушка, и правка заняли место в очереди с лимитами Telegram
+            assertEquals(2, outbound.getSubmitted());
+            assertEquals(2, outbound.getSent());
+        } finally {
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void progressiveReply_AfterDeadline_ShouldShowLastKnownThenFreshForecast() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        CompletableFuture<String> forecast = new CompletableFuture<>();
+        when(mockDialogLogic.getWeatherForPeriodAsync("Москва", 1)).thenReturn(forecast);
+        when(mockDialogLogic.getLastKnownWeatherForPeriod("Москва", 1)).thenReturn("Погода в Москве час назад");
+
+        Message placeholder = new Message();
+        placeholder.setMessageId(91);
+        placeholder.setText("⏳ Загружаю прогноз для Москва...");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(placeholder).when(botSpy).execute(any(SendMessage.class));
+        doReturn(true).when(botSpy).execute(any(EditMessageText.class));
+        botSpy.enableProgressiveReplies(Duration.ofMillis(100));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "🌤 Сегодня"));
+
+        verify(botSpy, timeout(2_000)).execute(argOfType(EditMessageText.class, edit -> edit.getMessageId() == 91
+                && edit.getText().endsWith("Погода в Москве час назад")));
+
+        forecast.complete("Погода в Москве: солнечно");
+
+        verify(botSpy, timeout(2_000)).execute(argOfType(EditMessageText.class, edit -> edit.getMessageId() == 91
+                && edit.getText().equals("Погода в Москве: солнечно")));
+        assertEquals(1, botSpy.getCompletionLatency().getCount());
+    }
+
+    @Test
+    void progressiveReply_SlowFetchWithoutLastKnown_ShouldSayLoadingAndEditOffCompletingThread() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        CompletableFuture<String> forecast = new CompletableFuture<>();
+        when(mockDialogLogic.getWeatherForPeriodAsync("Москва", 1)).thenReturn(forecast);
+
+        Message placeholder = new Message();
+        placeholder.setMessageId(92);
+        placeholder.setText("⏳ Загружаю прогноз для Москва...");
+
+        List<Thread> editThreads = new CopyOnWriteArrayList<>();
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(placeholder).when(botSpy).execute(any(SendMessage.class));
+        doAnswer(invocation -> {
+            editThreads.add(Thread.currentThread());
+            return true;
+        }).when(botSpy).execute(any(EditMessageText.class));
+        botSpy.enableProgressiveReplies(Duration.ofMillis(100));
+
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        botSpy.onUpdateReceived(createTextUpdate(TEST_CHAT_ID, "🌤 Сегодня"));
+
+        verify(botSpy, timeout(2_000)).execute(argOfType(EditMessageText.class, edit -> edit.getMessageId() == 92
+                && edit.getText().contains("загружается дольше обычного")));
+        verify(botSpy, never()).execute(argOfType(EditMessageText.class, edit -> edit.getText().contains("❌")));
+
+        forecast.complete("Погода в Москве: солнечно");
+
+        verify(botSpy, timeout(2_000)).execute(argOfType(EditMessageText.class, edit -> edit.getMessageId() == 92
+                && edit.getText().equals("Погода в Москве: солнечно")));
+        assertEquals(2, editThreads.size());
+        assertTrue(editThreads.stream().allMatch(Thread::isVirtual));
+        botSpy.onClosing();
+    }
+
+    @Test
+    void shedUpdates_ReplyBusy_ShouldAnswerOncePerChat() throws Exception {
+        CountDownLatch handling = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        TelegramBot botSpy = spy(telegramBot);
+        doAnswer(invocation -> {
+            handling.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return mockTelegramMessage;
+        }).when(botSpy).execute(any(SendMessage.class));
+        doReturn(CompletableFuture.completedFuture(mockTelegramMessage)).when(botSpy).executeAsync(any(SendMessage.class));
+        botSpy.enableAdmissionControl(1, Duration.ofMinutes(1), AdmissionPolicy.REPLY_BUSY);
+
+        try {
+            botSpy.onUpdatesReceived(List.of(createTextUpdate(TEST_CHAT_ID, "/start")));
+            assertTrue(handling.await(5, TimeUnit.SECONDS));
+
+            botSpy.onUpdatesReceived(List.of(
+                    createTextUpdate(TEST_CHAT_ID, "/help"),
+                    createTextUpdate(TEST_CHAT_ID, "/help"),
+                    createTextUpdate(TEST_CHAT_ID, "/help")));
+
+            assertEquals(2, botSpy.getDispatcher().getRejected());
+            verify(botSpy, times(1)).executeAsync(argOfType(SendMessage.class,
+                    message -> message.getText().contains("перегружен")));
+        } finally {
+            release.countDown();
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void slowForecast_ShouldNotDelayHelpInSameChat() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        CountDownLatch upstream = new CountDownLatch(1);
+        when(mockDialogLogic.getWeatherForPeriod("Москва", 1)).thenAnswer(invocation -> {
+            upstream.await(5, TimeUnit.SECONDS);
+            return "Погода в Москве: солнечно";
+        });
+        when(mockDialogLogic.getHelp()).thenReturn("Справка");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        try {
+            botSpy.onUpdatesReceived(List.of(
+                    createTextUpdate(TEST_CHAT_ID, "🌤 Сегодня"),
+                    createTextUpdate(TEST_CHAT_ID, "/help")));
+
+            // Справка уходит, пока прогноз ещё ждёт ответа сервиса погоды
+            verify(botSpy, timeout(2_000)).execute(argOfType(SendMessage.class, message -> message.getText().equals("Справка")));
+            verify(botSpy, never()).execute(argOfType(SendMessage.class, message -> message.getText().contains("солнечно")));
+
+            upstream.countDown();
+            verify(botSpy, timeout(2_000)).execute(argOfType(SendMessage.class, message -> message.getText().contains("солнечно")));
+            // Оба обновления прошли почтовый ящик чата, в сетевую полосу ушла только загрузка прогноза
+            assertEquals(1, botSpy.getIoLane().getDispatched());
+            assertEquals(2, botSpy.getDispatcher().getDispatched());
+        } finally {
+            upstream.countDown();
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void changeCityThenCityThenWeatherInOneBatch_ShouldKeepChatOrder() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        CountDownLatch nominatim = new CountDownLatch(1);
+        when(mockGeocoding.getCoordinates("Орск")).thenAnswer(invocation -> {
+            nominatim.await(5, TimeUnit.SECONDS);
+            return new Coordinates(51.2293, 58.4752, "Орск, Россия");
+        });
+        when(mockDialogLogic.getWeatherForPeriod("Орск", 1)).thenReturn("Погода в Орске: ясно");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doReturn(mockTelegramMessage).when(botSpy).execute(any(SendMessage.class));
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        try {
+            botSpy.onUpdatesReceived(List.of(
+                    createTextUpdate(TEST_CHAT_ID, "📍 Сменить город"),
+                    createTextUpdate(TEST_CHAT_ID, "Орск"),
+                    createTextUpdate(TEST_CHAT_ID, "🌤 Сегодня")));
+
+            // Город ждёт Nominatim в сетевой полосе, прогноз встаёт за ним, а не уходит со старым городом
+            verify(mockGeocoding, timeout(2_000)).getCoordinates("Орск");
+            assertEquals(0, botSpy.getDispatcher().getFailed());
+            verify(mockDialogLogic, never()).getWeatherForPeriod(any(), anyInt());
+
+            nominatim.countDown();
+            verify(botSpy, timeout(2_000)).execute(argOfType(SendMessage.class,
+                    message -> message.getText().equals("Погода в Орске: ясно")));
+            verify(mockDialogLogic, never()).getWeatherForPeriod(eq("Москва"), anyInt());
+            assertEquals("Орск", getSession(botSpy, TEST_CHAT_ID).getCity());
+            assertEquals(2, botSpy.getIoLane().getDispatched());
+        } finally {
+            nominatim.countDown();
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void progressiveReply_ThroughMailbox_ShouldSendPlaceholderFromIoLane() throws Exception {
+        WeatherBotDialogLogic mockDialogLogic = mock(WeatherBotDialogLogic.class);
+        setPrivateField(telegramBot, "weatherBotDialogLogic", mockDialogLogic);
+        CompletableFuture<String> forecast = new CompletableFuture<>();
+        when(mockDialogLogic.getWeatherForPeriodAsync("Москва", 1)).thenReturn(forecast);
+        when(mockDialogLogic.getHelp()).thenReturn("Справка");
+
+        CountDownLatch release = new CountDownLatch(1);
+        Message placeholder = new Message();
+        placeholder.setMessageId(93);
+        placeholder.setText("⏳ Загружаю прогноз для Москва...");
+
+        TelegramBot botSpy = spy(telegramBot);
+        doAnswer(invocation -> {
+            SendMessage message = invocation.getArgument(0);
+            if (message.getText().startsWith("⏳")) {
+                // Медленная отправка заглушки не должна задерживать справку в том же чате
+                release.await(5, TimeUnit.SECONDS);
+                return placeholder;
+            }
+            return mockTelegramMessage;
+        }).when(botSpy).execute(any(SendMessage.class));
+        botSpy.enableProgressiveReplies(Duration.ofSeconds(5));
+        putSession(botSpy, TEST_CHAT_ID, true, "DEFAULT", "Москва");
+
+        try {
+            botSpy.onUpdatesReceived(List.of(
+                    createTextUpdate(TEST_CHAT_ID, "🌤 Сегодня"),
+                    createTextUpdate(TEST_CHAT_ID, "/help")));
+
+            verify(botSpy, timeout(2_000)).execute(argOfType(SendMessage.class, message -> message.getText().equals("Справка")));
+            assertEquals(1, botSpy.getIoLane().getDispatched());
+        } finally {
+            release.countDown();
+            forecast.complete("Погода в Москве: солнечно");
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void inlineQuery_ShouldAnswerOffTheThreadThatCompletedTheCards() throws Exception {
+        InlineWeather mockInlineWeather = mock(InlineWeather.class);
+        setPrivateField(telegramBot, "inlineWeather", mockInlineWeather);
+        CompletableFuture<AnswerInlineQuery> cards = new CompletableFuture<>();
+        when(mockInlineWeather.answer(any())).thenReturn(cards);
+
+        TelegramBot botSpy = spy(telegramBot);
+        CompletableFuture<Thread> answeredOn = new CompletableFuture<>();
+        doAnswer(invocation -> {
+            answeredOn.complete(Thread.currentThread());
+            return true;
+        }).when(botSpy).execute(any(AnswerInlineQuery.class));
+
+        InlineQuery query = new InlineQuery();
+        query.setId("q1");
+        query.setQuery("Москва");
+        Update update = new Update();
+        update.setInlineQuery(query);
+
+        try {
+            botSpy.onUpdateReceived(update);
+            Thread completer = new Thread(() -> cards.complete(AnswerInlineQuery.builder()
+                    .inlineQueryId("q1").results(List.of()).build()), "card-completer");
+            completer.start();
+            completer.join();
+
+            assertNotSame(completer, answeredOn.get(2, TimeUnit.SECONDS));
+        } finally {
+            botSpy.onClosing();
+        }
+    }
+
+    @Test
+    void inlineQuery_WhenAnswerFails_ShouldNotThrow() throws Exception {
+        InlineWeather mockInlineWeather = mock(InlineWeather.class);
+        setPrivateField(telegramBot, "inlineWeather", mockInlineWeather);
+        when(mockInlineWeather.answer(any())).thenReturn(CompletableFuture.completedFuture(
+                AnswerInlineQuery.builder().inlineQueryId("q1").results(List.of()).build()));
+
+        TelegramBot botSpy = spy(telegramBot);
+        doThrow(new TelegramApiException("query is too old")).when(botSpy).execute(any(AnswerInlineQuery.class));
+
+        InlineQuery query = new InlineQuery();
+        query.setId("q1");
+        query.setQuery("Москва");
+        Update update = new Update();
+        update.setInlineQuery(query);
+
+        try {
+            assertDoesNotThrow(() -> botSpy.onUpdateReceived(update));
+            verify(botSpy, timeout(2_000)).execute(any(AnswerInlineQuery.class));
+        } finally {
+            botSpy.onClosing();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.utils.tests;
+
+import com.utils.services.TtlCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TtlCacheTest {
+
+    private long now;
+    private TtlCache<String, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        cache = new TtlCache<>(2, Duration.ofMinutes(1), () -> now);
+    }
+
+    @Test
+    void get_AfterPut_ShouldReturnValueAndCountHit() {
+        cache.put("москва", "Москва, Россия");
+
+        assertEquals("Москва, Россия", cache.get("москва"));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    void get_UnknownKey_ShouldReturnNullAndCountMiss() {
+        assertNull(cache.get("казань"));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void get_AfterTtl_ShouldExpireEntry() {
+        cache.put("москва", "Москва, Россия");
+        now = Duration.ofMinutes(1).toMillis();
+
+        assertNull(cache.get("москва"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void put_OverMaxSize_ShouldEvictLeastRecentlyUsed() {
+        cache.put("москва", "1");
+        cache.put("казань", "2");
+        cache.get("москва");
+        cache.put("сочи", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("москва"));
+        assertNull(cache.get("казань"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void put_OverMaxSize_ShouldPreferExpiredEntries() {
+        cache.put("москва", "1");
+        now = 30_000;
+        cache.put("казань", "2");
+        cache.get("москва");
+        now = 60_000;
+        cache.put("сочи", "3");
+
+        assertEquals("2", cache.get("казань"));
+        assertEquals("3", cache.get("сочи"));
+    }
+
+    @Test
+    void constructor_WithNonPositiveSize_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TtlCache<String, String>(0, Duration.ofMinutes(1)));
+    }
+}
@@ -0,0 +1,175 @@
+package com.utils.tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.utils.services.WebhookServer;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Задержка от появления обновления до вызова обработчика: long polling (DefaultBotSession против
+// локального эмулятора Bot API) и webhook (POST записанного обновления в WebhookServer).
+// Сеть до Telegram не участвует, сравнивается только собственная задержка приёма. Не запускается с тестами:
+//   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.utils.tests.UpdateIngestionBenchmark
+public class UpdateIngestionBenchmark {
+    private static final int SINGLE_UPDATES = 300;
+    private static final int BURST_UPDATES = 2_000;
+    private static final String TOKEN = "123:benchmark";
+
+    private static final ConcurrentHashMap<Integer, Long> sentAt = new ConcurrentHashMap<>();
+    private static final LinkedBlockingQueue<Long> latencies = new LinkedBlockingQueue<>();
+    private static volatile CountDownLatch burstDone = new CountDownLatch(0);
+
+    public static void main(String[] args) throws Exception {
+        // Иначе заголовки и тело ответа эмулятора уходят разными сегментами и упираются в Nagle + delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        longPolling();
+        webhook();
+        System.exit(0);
+    }
+
+    private static String updateJson(int updateId) {
+        long chatId = 1_000 + updateId % 500;
+        return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId
+                + ",\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"},\"date\":1700000000,\"text\":\"🌤 Сегодня\"}}";
+    }
+
+    private static void received(Update update) {
+        Long start = sentAt.remove(update.getUpdateId());
+        if (start != null) {
+            latencies.add(System.nanoTime() - start);
+        }
+        burstDone.countDown();
+    }
+
+    private static void longPolling() throws Exception {
+        LinkedBlockingQueue<String> available = new LinkedBlockingQueue<>();
+        HttpServer api = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        api.createContext("/bot" + TOKEN + "/", exchange -> emulateBotApi(exchange, available));
+        api.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        api.start();
+
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl("http://127.0.0.1:" + api.getAddress().getPort() + "/bot");
+        BotSession session = new TelegramBotsApi(DefaultBotSession.class).registerBot(new TelegramLongPollingBot(options, TOKEN) {
+            @Override
+            public void onUpdateReceived(Update update) {
+                received(update);
+            }
+
+            @Override
+            public String getBotUsername() {
+                return "benchmark_bot";
+            }
+        });
+
+        measure("long polling", 1, updateId -> {
+            sentAt.put(updateId, System.nanoTime());
+            available.add(updateJson(updateId));
+        });
+        session.stop();
+        api.stop(0);
+    }
+
+    // getUpdates держится открытым, пока не появится обновление (как настоящий long polling), отдаёт до 100 за раз
+    private static void emulateBotApi(HttpExchange exchange, LinkedBlockingQueue<String> available) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            String response;
+            if (exchange.getRequestURI().getPath().toLowerCase().endsWith("/getupdates")) {
+                List<String> updates = new ArrayList<>();
+                try {
+                    String first = available.poll(1, TimeUnit.SECONDS);
+                    if (first != null) {
+                        updates.add(first);
+                        available.drainTo(updates, 99);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                response = "{\"ok\":true,\"result\":[" + String.join(",", updates) + "]}";
+            } else {
+                response = "{\"ok\":true,\"result\":true}";
+            }
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static void webhook() throws Exception {
+        WebhookServer server = new WebhookServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                "/telegram", "secret", updates -> updates.forEach(UpdateIngestionBenchmark::received));
+        server.start();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI uri = URI.create("http://127.0.0.1:" + server.getPort() + "/telegram");
+
+        // Telegram держит до 40 параллельных соединений к webhook (max_connections)
+        Semaphore connections = new Semaphore(40);
+        measure("webhook", 1_000_000, updateId -> {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("X-Telegram-Bot-Api-Secret-Token", "secret")
+                    .POST(HttpRequest.BodyPublishers.ofString(updateJson(updateId)))
+                    .build();
+            connections.acquireUninterruptibly();
+            sentAt.put(updateId, System.nanoTime());
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> connections.release());
+        });
+        server.close();
+    }
+
+    private static void measure(String name, int firstUpdateId, Consumer<Integer> publish) throws Exception {
+        int updateId = firstUpdateId;
+        // Прогрев
+        for (int i = 0; i < 50; i++) {
+            publish.accept(updateId++);
+            latencies.poll(5, TimeUnit.SECONDS);
+        }
+
+        long[] single = new long[SINGLE_UPDATES];
+        for (int i = 0; i < SINGLE_UPDATES; i++) {
+            publish.accept(updateId++);
+            single[i] = latencies.poll(5, TimeUnit.SECONDS);
+            Thread.sleep(2);
+        }
+        Arrays.sort(single);
+
+        latencies.clear();
+        burstDone = new CountDownLatch(BURST_UPDATES);
+        long start = System.nanoTime();
+        for (int i = 0; i < BURST_UPDATES; i++) {
+            publish.accept(updateId++);
+        }
+        burstDone.await(30, TimeUnit.SECONDS);
+        long burstMillis = (System.nanoTime() - start) / 1_000_000;
+        latencies.clear();
+
+        System.out.printf("%-12s  одиночные: p50 %.2f мс, p99 %.2f мс; пачка из %d: %d мс (%.0f обновлений/с)%n",
+                name, single[single.length / 2] / 1e6, single[single.length * 99 / 100] / 1e6,
+                BURST_UPDATES, burstMillis, BURST_UPDATES * 1000.0 / Math.max(1, burstMillis));
+    }
+}
@@ -0,0 +1,141 @@
+package com.utils.tests;
+
+import com.utils.models.UserSession;
+import com.utils.services.SessionTable;
+import com.utils.services.WalSessionStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalSessionStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Map<Long, UserSession> byChat(WalSessionStore store) {
+        return store.loadAll().stream().collect(Collectors.toMap(UserSession::getChatId, Function.identity()));
+    }
+
+    @Test
+    void open_AfterClose_ShouldRecoverLatestState() throws IOException {
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            store.save(new UserSession(1, true, (byte) 1, null));
+            store.save(new UserSession(1, true, (byte) 0, "Москва"));
+            store.save(new UserSession(2, true, (byte) 0, "Казань"));
+            store.save(new UserSession(3, true, (byte) 0, "Сочи"));
+            store.remove(3);
+        }
+
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            Map<Long, UserSession> sessions = byChat(store);
+
+            assertEquals(2, sessions.size());
+            assertEquals(new UserSession(1, true, (byte) 0, "Москва"), sessions.get(1L));
+            assertEquals("Казань", sessions.get(2L).getCity());
+        }
+    }
+
+    @Test
+    void close_ShouldSnapshotAndTruncateWal() throws IOException {
+        SessionTable table = new SessionTable();
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            store.snapshotFrom(table::forEach);
+            UserSession session = new UserSession(1, true, (byte) 0, "Москва");
+            table.put(session);
+            store.save(session);
+        }
+
+        assertTrue(Files.size(tempDir.resolve(WalSessionStore.SNAPSHOT_FILE)) > 0);
+        assertEquals(0, Files.size(tempDir.resolve(WalSessionStore.WAL_FILE)));
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            assertEquals(Map.of(1L, new UserSession(1, true, (byte) 0, "Москва")), byChat(store));
+        }
+    }
+
+    @Test
+    void close_WithoutSnapshotSource_ShouldKeepStateInWal() throws IOException {
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            store.save(new UserSession(1, true, (byte) 0, "Москва"));
+        }
+
+        assertFalse(Files.exists(tempDir.resolve(WalSessionStore.SNAPSHOT_FILE)));
+        assertTrue(Files.size(tempDir.resolve(WalSessionStore.WAL_FILE)) > 0);
+    }
+
+    @Test
+    void loadAll_ShouldReleaseRecoveredSessionsAfterFirstCall() throws IOException {
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            store.save(new UserSession(1, true, (byte) 0, "Москва"));
+            store.save(new UserSession(2, true, (byte) 0, "Казань"));
+        }
+
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            assertEquals(2, store.loadAll().size());
+            assertTrue(store.loadAll().isEmpty());
+            assertEquals(2, store.getRecoveredCount());
+        }
+    }
+
+    @Test
+    void open_WithoutSnapshot_ShouldReplayWalAndDropTornTail() throws IOException {
+        // Имитируем падение: копируем WAL до закрытия (снимка ещё нет) и обрываем последнюю запись
+        Path crashed = Files.createDirectory(tempDir.resolve("crashed"));
+        Path wal = crashed.resolve(WalSessionStore.WAL_FILE);
+        try (WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            store.save(new UserSession(1, true, (byte) 0, "Москва"));
+            store.save(new UserSession(2, false, (byte) 2, null));
+            store.save(new UserSession(3, true, (byte) 0, "Омск"));
+            while (store.getWrites() < 3) {
+                Thread.onSpinWait();
+            }
+            Files.copy(tempDir.resolve(WalSessionStore.WAL_FILE), wal);
+        }
+        try (FileChannel channel = FileChannel.open(wal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (WalSessionStore store = WalSessionStore.open(crashed, Duration.ofHours(1))) {
+            Map<Long, UserSession> sessions = byChat(store);
+
+            assertEquals(2, sessions.size());
+            assertEquals("Москва", sessions.get(1L).getCity());
+            assertFalse(sessions.get(2L).isActive());
+            assertNull(sessions.get(2L).getCity());
+        }
+    }
+
+    @Test
+    void save_ManyWrites_ShouldGroupCommit() throws IOException {
+        WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1));
+        for (int i = 0; i < 10_000; i++) {
+            store.save(new UserSession(i, true, (byte) 0, "Город " + (i % 10)));
+        }
+        store.close();
+
+        assertEquals(10_000, store.getWrites());
+        assertTrue(store.getCommits() < 10_000, store.toString());
+
+        try (WalSessionStore reopened = WalSessionStore.open(tempDir, Duration.ofHours(1))) {
+            assertEquals(10_000, reopened.loadAll().size());
+        }
+    }
+
+    @Test
+    void save_AfterClose_ShouldThrow() throws IOException {
+        WalSessionStore store = WalSessionStore.open(tempDir, Duration.ofHours(1));
+        store.close();
+
+        assertThrows(IllegalStateException.class, () -> store.save(new UserSession(1, true, (byte) 0, null)));
+    }
+}
@@ -0,0 +1,107 @@
+package com.utils.tests;
+
+import com.utils.models.Coordinates;
+import com.utils.models.OpenMeteoResponse;
+import com.utils.services.Geocoding;
+import com.utils.services.WeatherAPI;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherAPIAsyncTest {
+
+    private static final String WEATHER_JSON = """
+            {
+                "daily": {
+                    "time": ["2023-10-01", "2023-10-02"],
+                    "temperature_2m_max": [20.5, 22.0],
+                    "temperature_2m_min": [10.5, 12.0],
+                    "weathercode": [0, 1],
+                    "windspeed_10m_max": [15.0, 18.0],
+                    "precipitation_probability_max": [30.0, 40.0]
+                }
+            }
+            """;
+
+    @Mock
+    private Geocoding mockGeocoding;
+
+    @Mock
+    private OkHttpClient mockClient;
+
+    @Mock
+    private Call mockCall;
+
+    private WeatherAPI weatherAPI;
+
+    @BeforeEach
+    void setUp() {
+        weatherAPI = new WeatherAPI(mockClient, mockGeocoding);
+
+        when(mockClient.newCall(any(Request.class))).thenReturn(mockCall);
+    }
+
+    @Test
+    void getWeatherAsync_ShouldCompleteWithParsedResponse() throws Exception {
+        HttpStubs.answerEnqueueWith(mockCall, 200, WEATHER_JSON);
+
+        OpenMeteoResponse result = weatherAPI.getWeatherAsync(55.7558, 37.6173, 2).get();
+
+        assertEquals(2, result.getDays());
+        assertEquals(22.0, result.getDaily().getTemperature2mMax().get(1));
+        verify(mockCall, never()).execute();
+    }
+
+    @Test
+    void getWeatherAsync_WithHttpError_ShouldCompleteExceptionally() {
+        HttpStubs.answerEnqueueWith(mockCall, 503, "");
+
+        CompletableFuture<OpenMeteoResponse> future = weatherAPI.getWeatherAsync(55.7558, 37.6173, 1);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(IOException.class, exception.getCause());
+        assertTrue(exception.getCause().getMessage().contains("503"));
+    }
+
+    @Test
+    void getWeatherByCityAsync_ShouldChainGeocodingAndForecast() throws Exception {
+        when(mockGeocoding.getCoordinatesAsync("Москва")).thenReturn(
+                CompletableFuture.completedFuture(new Coordinates(55.7558, 37.6173, "Москва, Россия")));
+        HttpStubs.answerEnqueueWith(mockCall, 200, WEATHER_JSON);
+
+        OpenMeteoResponse result = weatherAPI.getWeatherByCityAsync("Москва", 1).get();
+
+        assertEquals(1, result.getDays());
+        verify(mockGeocoding, never()).getCoordinates(any());
+    }
+
+    @Test
+    void getWeatherAsync_FailedTransport_ShouldCompleteExceptionally() {
+        doAnswer(invocation -> {
+            Callback callback = invocation.getArgument(0);
+            callback.onFailure(mockCall, new IOException("timeout"));
+            return null;
+        }).when(mockCall).enqueue(any(Callback.class));
+
+        CompletableFuture<OpenMeteoResponse> future = weatherAPI.getWeatherAsync(55.7558, 37.6173, 1);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertEquals("timeout", exception.getCause().getMessage());
+        assertEquals(0, weatherAPI.getRequests().getInFlight());
+    }
+}
@@ -0,0 +1,192 @@
+package com.utils.tests;
+
+import com.utils.models.OpenMeteoResponse;
+import com.utils.services.Geocoding;
+import com.utils.services.TtlCache;
+import com.utils.services.WeatherAPI;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WeatherAPICacheTest {
+
+    private static final String WEATHER_JSON = """
+            {
+                "daily": {
+                    "time": ["2023-10-01"],
+                    "temperature_2m_max": [20.5],
+                    "temperature_2m_min": [10.5],
+                    "weathercode": [0],
+                    "windspeed_10m_max": [15.0],
+                    "precipitation_probability_max": [30.0]
+                }
+            }
+            """;
+
+    private static final String WEEK_JSON = """
+            {
+                "daily": {
+                    "time": ["2023-10-01", "2023-10-02", "2023-10-03", "2023-10-04",
+                            "2023-10-05", "2023-10-06", "2023-10-07"],
+                    "temperature_2m_max": [20.5, 21.0, 22.0, 23.0, 24.0, 25.0, 26.0],
+                    "temperature_2m_min": [10.5, 11.0, 12.0, 13.0, 14.0, 15.0, 16.0],
+                    "weathercode": [0, 1, 2, 3, 0, 1, 2],
+                    "windspeed_10m_max": [15.0, 16.0, 17.0, 18.0, 19.0, 20.0, 21.0],
+                    "precipitation_probability_max": [30.0, 40.0, 50.0, 60.0, 70.0, 80.0, 90.0]
+                }
+            }
+            """;
+
+    @Mock
+    private Geocoding mockGeocoding;
+
+    @Mock
+    private OkHttpClient mockClient;
+
+    @Mock
+    private Call mockCall;
+
+    private long now;
+    private WeatherAPI weatherAPI;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        TtlCache<String, OpenMeteoResponse> cache = new TtlCache<>(100, Duration.ofMinutes(15), () -> now);
+        weatherAPI = new WeatherAPI(mockClient, mockGeocoding, cache, 0.1, true);
+    }
+
+    private void stubResponse() throws IOException {
+        stubResponse(WEATHER_JSON);
+    }
+
+    private void stubResponse(String json) throws IOException {
+        HttpStubs.stubJson(mockClient, mockCall, json);
+    }
+
+    @Test
+    void getWeather_NearbyCoordinates_ShouldShareOneRequest() throws IOException {
+        stubResponse();
+
+        OpenMeteoResponse first = weatherAPI.getWeather(55.7558, 37.6173, 1);
+        OpenMeteoResponse second = weatherAPI.getWeather(55.7612, 37.6201, 1);
+
+        assertSame(first, second);
+        verify(mockClient, times(1)).newCall(any(Request.class));
+        assertEquals(0.5, weatherAPI.getForecastCache().getHitRatio());
+    }
+
+    @Test
+    void getWeather_ShouldRequestCellCenter() throws IOException {
+        stubResponse();
+
+        weatherAPI.getWeather(55.7558, 37.6173, 1);
+
+        ArgumentCaptor<Request> captor = ArgumentCaptor.forClass(Request.class);
+        verify(mockClient).newCall(captor.capture());
+        String url = captor.getValue().url().toString();
+        assertTrue(url.contains("latitude=55.8000"));
+        assertTrue(url.contains("longitude=37.6000"));
+    }
+
+    @Test
+    void getWeather_DistantCoordinates_ShouldUseSeparateCells() throws IOException {
+        stubResponse();
+
+        weatherAPI.getWeather(55.7558, 37.6173, 1);
+        weatherAPI.getWeather(59.9386, 30.3141, 1);
+
+        verify(mockClient, times(2)).newCall(any(Request.class));
+        assertEquals(2, weatherAPI.getForecastCache().size());
+    }
+
+    @Test
+    void getWeather_AfterTtl_ShouldRefreshAndReportAge() throws IOException {
+        stubResponse();
+
+        weatherAPI.getWeather(55.7558, 37.6173, 1);
+        now = Duration.ofMinutes(5).toMillis();
+        assertEquals(now, weatherAPI.getForecastCache().getEntryAges().values().iterator().next());
+
+        now = Duration.ofMinutes(15).toMillis();
+        weatherAPI.getWeather(55.7558, 37.6173, 1);
+
+        verify(mockClient, times(2)).newCall(any(Request.class));
+    }
+
+    @Test
+    void getWeather_DifferentPeriods_ShouldSliceOneWeeklyResponse() throws IOException {
+        stubResponse(WEEK_JSON);
+
+        OpenMeteoResponse today = weatherAPI.getWeather(55.7558, 37.6173, 1);
+        OpenMeteoResponse tomorrow = weatherAPI.getWeather(55.7558, 37.6173, 2);
+        OpenMeteoResponse week = weatherAPI.getWeather(55.7558, 37.6173, 7);
+
+        assertEquals(1, today.getDays());
+        assertEquals(2, tomorrow.getDays());
+        assertEquals(7, week.getDays());
+        assertEquals(21.0, tomorrow.getDaily().getTemperature2mMax().get(1));
+
+        ArgumentCaptor<Request> captor = ArgumentCaptor.forClass(Request.class);
+        verify(mockClient, times(1)).newCall(captor.capture());
+        assertTrue(captor.getValue().url().toString().contains("forecast_days=7"));
+    }
+
+    @Test
+    void getWeather_WithoutSupersetFetch_ShouldRequestEachPeriod() throws IOException {
+        stubResponse(WEEK_JSON);
+        weatherAPI = new WeatherAPI(mockClient, mockGeocoding, new TtlCache<>(100, Duration.ofMinutes(15)), 0.1, false);
+
+        weatherAPI.getWeather(55.7558, 37.6173, 1);
+        weatherAPI.getWeather(55.7558, 37.6173, 3);
+
+        verify(mockClient, times(2)).newCall(any(Request.class));
+    }
+
+    @Test
+    void getLastKnownWeather_AfterTtl_ShouldStillServeExpiredForecast() throws IOException {
+        stubResponse(WEEK_JSON);
+
+        weatherAPI.getWeather(55.7558, 37.6173, 7);
+        now = Duration.ofMinutes(20).toMillis();
+
+        OpenMeteoResponse lastKnown = weatherAPI.getLastKnownWeather(55.7612, 37.6201, 2);
+        assertNotNull(lastKnown);
+        assertEquals(2, lastKnown.getDays());
+        assertNull(weatherAPI.getLastKnownWeather(59.9386, 30.3141, 1));
+        verify(mockClient, times(1)).newCall(any(Request.class));
+    }
+
+    @Test
+    void enableBatching_SecondCall_ShouldKeepFirstBatcher() {
+        weatherAPI.enableBatching(Duration.ofMillis(20), 50);
+        try {
+            var batcher = weatherAPI.getBatcher();
+
+            assertThrows(IllegalStateException.class, () -> weatherAPI.enableBatching(Duration.ofMillis(5), 10));
+            assertSame(batcher, weatherAPI.getBatcher());
+        } finally {
+            weatherAPI.getBatcher().shutdown();
+        }
+    }
+
+    @Test
+    void constructor_WithNonPositiveCellSize_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new WeatherAPI(mockGeocoding, new TtlCache<>(1, Duration.ofMinutes(1)), 0));
+    }
+}
@@ -10,6 +10,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -90,7 +91,7 @@ class WeatherAPITest {
         when(mockCall.execute()).thenReturn(mockResponse);
         when(mockResponse.isSuccessful()).thenReturn(true);
         when(mockResponse.body()).thenReturn(mockResponseBody);
-        when(mockResponseBody.string()).thenReturn(jsonResponse);
+        when(mockResponseBody.source()).thenAnswer(invocation -> new Buffer().writeUtf8(jsonResponse));
 
         // Act
         OpenMeteoResponse result = weatherAPI.getWeather(55.7558, 37.6173, 2);
@@ -139,7 +140,7 @@ class WeatherAPITest {
         when(mockCall.execute()).thenReturn(mockResponse);
         when(mockResponse.isSuccessful()).thenReturn(true);
         when(mockResponse.body()).thenReturn(mockResponseBody);
-        when(mockResponseBody.string()).thenReturn(jsonResponse);
+        when(mockResponseBody.source()).thenAnswer(invocation -> new Buffer().writeUtf8(jsonResponse));
 
         // Act
         OpenMeteoResponse result = weatherAPI.getWeatherByCity("Москва", 1);
@@ -225,7 +226,7 @@ class WeatherAPITest {
         when(mockCall.execute()).thenReturn(mockResponse);
         when(mockResponse.isSuccessful()).thenReturn(true);
         when(mockResponse.body()).thenReturn(mockResponseBody);
-        when(mockResponseBody.string()).thenReturn(jsonResponse);
+        when(mockResponseBody.source()).thenAnswer(invocation -> new Buffer().writeUtf8(jsonResponse));
 
         // Act
         OpenMeteoResponse result = weatherAPI.getWeather(55.7558, 37.6173, 10);
@@ -0,0 +1,102 @@
+package com.utils.tests;
+
+import com.utils.services.WebhookServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookServerTest {
+
+    // Обновление в том виде, в каком его присылает Telegram
+    private static final String RECORDED_UPDATE = """
+            {"update_id":815204733,
+             "message":{"message_id":42,
+                        "from":{"id":12345,"is_bot":false,"first_name":"Иван","language_code":"ru"},
+                        "chat":{"id":12345,"first_name":"Иван","type":"private"},
+                        "date":1700000000,
+                        "text":"🌤 Сегодня"}}
+            """;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final LinkedBlockingQueue<Update> handled = new LinkedBlockingQueue<>();
+    private WebhookServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private void start(String secret) throws IOException {
+        server = new WebhookServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "/telegram", secret,
+                (List<Update> updates) -> handled.addAll(updates));
+        server.start();
+    }
+
+    private int post(String body, String secret) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                        URI.create("http://127.0.0.1:" + server.getPort() + "/telegram"))
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            request.header("X-Telegram-Bot-Api-Secret-Token", secret);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Test
+    void post_RecordedUpdate_ShouldAcknowledgeAndHandOff() throws Exception {
+        start("s3cret");
+
+        assertEquals(200, post(RECORDED_UPDATE, "s3cret"));
+
+        Update update = handled.poll(5, TimeUnit.SECONDS);
+        assertNotNull(update);
+        assertEquals(815204733, update.getUpdateId());
+        assertEquals(12345L, update.getMessage().getChatId());
+        assertEquals("🌤 Сегодня", update.getMessage().getText());
+        assertEquals(1, server.getReceived());
+    }
+
+    @Test
+    void post_WrongSecret_ShouldBeRejected() throws Exception {
+        start("s3cret");
+
+        assertEquals(401, post(RECORDED_UPDATE, "guess"));
+        assertEquals(401, post(RECORDED_UPDATE, null));
+
+        assertTrue(handled.isEmpty());
+        assertEquals(2, server.getRejected());
+    }
+
+    @Test
+    void post_MalformedBody_ShouldReturnBadRequest() throws Exception {
+        start(null);
+
+        assertEquals(400, post("{\"update_id\":", null));
+        assertTrue(handled.isEmpty());
+    }
+
+    @Test
+    void get_ShouldNotBeAllowed() throws Exception {
+        start(null);
+
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + server.getPort() + "/telegram")).GET().build();
+
+        assertEquals(405, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+}